@@ -0,0 +1,26 @@
+package com.example;
+
+import java.time.LocalDate;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmarks jar. Takes the usual JMH command line, always adds the GC
+ * (allocation) profiler and, unless {@code -rff} is given, writes JSON results to a dated file that
+ * can be kept as a baseline and compared across versions.
+ */
+public class Benchmarks {
+  public static void main(String[] args) throws Exception {
+    CommandLineOptions commandLine = new CommandLineOptions(args);
+    ChainedOptionsBuilder options =
+        new OptionsBuilder().parent(commandLine).addProfiler(GCProfiler.class);
+    if (!commandLine.getResult().hasValue()) {
+      options.resultFormat(ResultFormatType.JSON).result("jmh-result-" + LocalDate.now() + ".json");
+    }
+    new Runner(options.build()).run();
+  }
+}
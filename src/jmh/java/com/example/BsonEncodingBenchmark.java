@@ -0,0 +1,65 @@
+package com.example;
+
+import com.mongodb.MongoClientSettings;
+import java.time.Clock;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.bson.BsonBinaryWriter;
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Serialization of an already generated document: the size check {@link DocumentGenerator} does on
+ * every document, and the encode the driver does when sending it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BsonEncodingBenchmark {
+  @Param({"1024", "4096", "16384"})
+  int targetSize;
+
+  private Document document;
+  private Codec<Document> codec;
+  private BasicOutputBuffer buffer;
+
+  @Setup
+  public void setup() {
+    document =
+        DocumentGenerator.generateRichDocument(
+            new FakerValueSource(new Random(42), Clock.systemUTC()), 0, targetSize);
+    codec = MongoClientSettings.getDefaultCodecRegistry().get(Document.class);
+    buffer = new BasicOutputBuffer(targetSize * 2);
+  }
+
+  @Benchmark
+  public int calculateSize() {
+    return DocumentGenerator.calculateSize(document);
+  }
+
+  @Benchmark
+  public int encode() {
+    buffer.truncateToPosition(0);
+    try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+      codec.encode(
+          writer, document, EncoderContext.builder().isEncodingCollectibleDocument(true).build());
+    }
+    return buffer.getPosition();
+  }
+}
@@ -0,0 +1,63 @@
+package com.example;
+
+import java.time.Clock;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Cost of building one load-phase document, per target size and value source. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DocumentGeneratorBenchmark {
+  // Small enough to build in a second or two at setup
+  private static final int VALUE_POOL_SIZE = 1000;
+
+  @Param({"1024", "4096", "16384"})
+  int targetSize;
+
+  @Param({"faker", "pool"})
+  String values;
+
+  private ValueSource valueSource;
+  private RawDocumentGenerator rawGenerator;
+  private long index;
+
+  @Setup
+  public void setup() {
+    valueSource =
+        values.equals("pool")
+            ? new PooledValueSource(
+                ValuePool.build(VALUE_POOL_SIZE, true, 42),
+                new SplittableRandom(42),
+                Clock.systemUTC())
+            : new FakerValueSource(new Random(42), Clock.systemUTC());
+    rawGenerator = new RawDocumentGenerator(valueSource, targetSize);
+  }
+
+  @Benchmark
+  public Document generateRichDocument() {
+    return DocumentGenerator.generateRichDocument(valueSource, index++, targetSize);
+  }
+
+  @Benchmark
+  public RawBsonDocument generateRawDocument() {
+    return rawGenerator.generate(index++);
+  }
+}
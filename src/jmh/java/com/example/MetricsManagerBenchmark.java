@@ -0,0 +1,117 @@
+package com.example;
+
+import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The per-operation metrics calls every worker makes, with all hardware threads hitting the shared
+ * {@link MetricsManager}; override the thread count with {@code -t} to match NUM_THREADS. The
+ * {@code countRead*} pairs compare the counters of one read at 64, 128 and 256 threads: the shared
+ * AtomicLong plus OpenTelemetry LongCounter updates workers used to make (the baseline) against the
+ * per-thread counters that replaced them. Run them alone with {@code countRead}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class MetricsManagerBenchmark {
+  private MetricsManager metricsManager;
+  // The counters of one read before per-thread counters
+  private LongCounter sharedTotalOperations;
+  private LongCounter sharedReadOperations;
+  private final AtomicLong sharedTotalOperationsCount = new AtomicLong();
+  private final AtomicLong sharedReadOperationsCount = new AtomicLong();
+
+  @Setup
+  public void setup() {
+    metricsManager = MetricsManager.getInstance();
+    metricsManager.resetStartTime();
+    // MetricsManager registers its SDK globally, so these counters aggregate as the old ones did
+    Meter meter = GlobalOpenTelemetry.getMeter("com.example.mongodb-java-app.benchmark");
+    sharedTotalOperations = meter.counterBuilder("benchmark_total_operations").build();
+    sharedReadOperations = meter.counterBuilder("benchmark_read_operations").build();
+  }
+
+  @Benchmark
+  public void incrementTotalOperations() {
+    metricsManager.incrementTotalOperations();
+  }
+
+  @Benchmark
+  public void recordLatency() {
+    metricsManager.recordLatency(OperationType.READ, 750_000);
+  }
+
+  /** What a worker records for one completed read. */
+  @Benchmark
+  public void recordRead() {
+    metricsManager.incrementReadOperations();
+    metricsManager.recordLatency(OperationType.READ, 750_000);
+    metricsManager.incrementTotalOperations();
+  }
+
+  @Benchmark
+  @Threads(64)
+  public void countReadShared064() {
+    countReadShared();
+  }
+
+  @Benchmark
+  @Threads(64)
+  public void countReadPerThread064() {
+    countReadPerThread();
+  }
+
+  @Benchmark
+  @Threads(128)
+  public void countReadShared128() {
+    countReadShared();
+  }
+
+  @Benchmark
+  @Threads(128)
+  public void countReadPerThread128() {
+    countReadPerThread();
+  }
+
+  @Benchmark
+  @Threads(256)
+  public void countReadShared256() {
+    countReadShared();
+  }
+
+  @Benchmark
+  @Threads(256)
+  public void countReadPerThread256() {
+    countReadPerThread();
+  }
+
+  private void countReadShared() {
+    sharedReadOperations.add(1);
+    sharedReadOperationsCount.incrementAndGet();
+    sharedTotalOperations.add(1);
+    sharedTotalOperationsCount.incrementAndGet();
+  }
+
+  private void countReadPerThread() {
+    metricsManager.incrementReadOperations();
+    metricsManager.incrementTotalOperations();
+  }
+}
@@ -0,0 +1,74 @@
+package com.example;
+
+import com.example.keys.KeyChooserFactory;
+import com.example.keys.KeyDistribution;
+import java.time.Clock;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The part of an {@link OperationWorker} iteration that runs before any I/O: op type and key, drawn
+ * by an {@link OperationGenerator} built the way the run phase builds one. {@code workload} is a
+ * WORKLOAD preset, with its own key distribution; {@code default} is the WRITE_PERCENTAGE mix.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class OperationSelectionBenchmark {
+  private static final long RECORD_COUNT = 10_000_000;
+  private static final int WRITE_PERCENTAGE = 5;
+
+  @Param({"default", "a", "b", "c", "d", "e", "f"})
+  String workload;
+
+  private OperationGenerator generator;
+
+  @Setup
+  public void setup() {
+    Workload mix =
+        Workload.fromEnv(
+            Map.of("WORKLOAD", workload.equals("default") ? "" : workload), WRITE_PERCENTAGE);
+    AtomicLong insertKeys = new AtomicLong(RECORD_COUNT);
+    generator =
+        new OperationGenerator(
+            mix,
+            1024,
+            false,
+            new FakerValueSource(new Random(42), Clock.systemUTC()),
+            new KeyChooserFactory(
+                    KeyDistribution.parse(mix.getKeyDistribution()),
+                    insertKeys::get,
+                    0.99,
+                    0.2,
+                    0.8,
+                    new SplittableRandom(42))
+                .create(),
+            new SplittableRandom(42),
+            new UpdateMix(UpdateShape.parseMix("full"), 10),
+            insertKeys);
+  }
+
+  @Benchmark
+  public long selectOperation() {
+    OperationType type = generator.nextOperation();
+    long key = generator.nextKey();
+    return key ^ type.ordinal();
+  }
+}
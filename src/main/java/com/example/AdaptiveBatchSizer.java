@@ -0,0 +1,157 @@
+package com.example;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Chooses the insertMany batch size for all batch-mode loaders. A batch is cut short once its
+ * encoded documents reach LOAD_BATCH_MAX_BYTES, so it stays within one wire message whatever the
+ * document size. The document count is tuned by hill climbing on load throughput: after every
+ * window of batches it keeps moving the size the same way while docs/sec improves, and turns around
+ * when it drops. A failed batch halves the size; a batch slower than LOAD_BATCH_MAX_LATENCY_MS
+ * shrinks it.
+ */
+public class AdaptiveBatchSizer<T> implements MetricsReporter {
+  private static final Logger logger = LoggerFactory.getLogger(AdaptiveBatchSizer.class);
+  // The server's maxWriteBatchSize; the driver splits larger batches anyway
+  private static final int MAX_BATCH_COUNT = 100_000;
+  private static final double STEP = 1.25;
+
+  private final ToIntFunction<T> encodedSize;
+  private final int maxBatchBytes;
+  private final long maxLatencyNanos;
+  private final int windowBatches;
+  private volatile int batchSize;
+
+  // Current window, guarded by this
+  private long windowStart = System.nanoTime();
+  private long windowDocuments;
+  private int windowCount;
+  private double lastRate;
+  private boolean growing = true;
+  private int smallestSize;
+  private int largestSize;
+
+  private final LongAdder batches = new LongAdder();
+  private final LongAdder documents = new LongAdder();
+  private final LongAdder bytes = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private long reportedBatches;
+  private long reportedDocuments;
+  private long reportedBytes;
+
+  /**
+   * @param encodedSize BSON size of a generated document, exact or estimated
+   */
+  public AdaptiveBatchSizer(Config config, ToIntFunction<T> encodedSize) {
+    this.encodedSize = encodedSize;
+    this.maxBatchBytes = config.getLoadBatchMaxBytes();
+    this.maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(config.getLoadBatchMaxLatencyMillis());
+    this.windowBatches = Math.max(4, config.getNumThreads());
+    this.batchSize = Math.max(1, Math.min(config.getLoadBatchSize(), MAX_BATCH_COUNT));
+    this.smallestSize = batchSize;
+    this.largestSize = batchSize;
+  }
+
+  /** Documents to put in the next batch, unless it fills {@link #getMaxBatchBytes} first. */
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public int getMaxBatchBytes() {
+    return maxBatchBytes;
+  }
+
+  public int encodedSize(T document) {
+    return encodedSize.applyAsInt(document);
+  }
+
+  public synchronized void recordBatch(int count, long batchBytes, long latencyNanos) {
+    batches.increment();
+    documents.add(count);
+    bytes.add(batchBytes);
+    windowDocuments += count;
+    windowCount++;
+    if (latencyNanos > maxLatencyNanos) {
+      growing = false;
+      resize(1 / STEP, batchBytes / (double) count);
+      return;
+    }
+    if (windowCount < windowBatches) {
+      return;
+    }
+    double rate = windowDocuments / (double) (System.nanoTime() - windowStart);
+    if (rate < lastRate) {
+      growing = !growing;
+    }
+    lastRate = rate;
+    resize(growing ? STEP : 1 / STEP, batchBytes / (double) count);
+  }
+
+  public synchronized void recordFailure() {
+    failures.increment();
+    growing = false;
+    lastRate = 0;
+    resize(0.5, 0);
+  }
+
+  // Starts a new window at the new size; a size that would overflow maxBatchBytes is not tried
+  private void resize(double factor, double averageBytes) {
+    int size = (int) Math.round(batchSize * factor);
+    if (size == batchSize) {
+      size += factor > 1 ? 1 : -1;
+    }
+    if (averageBytes > 0) {
+      size = (int) Math.min(size, maxBatchBytes / averageBytes);
+    }
+    size = Math.max(1, Math.min(size, MAX_BATCH_COUNT));
+    if (size != batchSize) {
+      logger.debug("Load batch size {} -> {}", batchSize, size);
+    }
+    batchSize = size;
+    smallestSize = Math.min(smallestSize, size);
+    largestSize = Math.max(largestSize, size);
+    windowStart = System.nanoTime();
+    windowDocuments = 0;
+    windowCount = 0;
+  }
+
+  @Override
+  public String intervalReport(double intervalSeconds) {
+    long batchCount = batches.sum();
+    long documentCount = documents.sum();
+    long byteCount = bytes.sum();
+    long intervalBatches = batchCount - reportedBatches;
+    String line =
+        String.format(
+            "[LOAD-BATCH: Size=%d, AvgDocs=%.1f, AvgKB=%.1f, Failures=%d]",
+            batchSize,
+            intervalBatches > 0
+                ? (documentCount - reportedDocuments) / (double) intervalBatches
+                : 0,
+            intervalBatches > 0 ? (byteCount - reportedBytes) / 1024.0 / intervalBatches : 0,
+            failures.sum());
+    reportedBatches = batchCount;
+    reportedDocuments = documentCount;
+    reportedBytes = byteCount;
+    return line;
+  }
+
+  @Override
+  public synchronized void printFinalReport() {
+    long batchCount = batches.sum();
+    System.out.println("[LOAD-BATCH], FinalSize, " + batchSize);
+    System.out.println("[LOAD-BATCH], SmallestSize, " + smallestSize);
+    System.out.println("[LOAD-BATCH], LargestSize, " + largestSize);
+    System.out.println(
+        "[LOAD-BATCH], AverageDocs, "
+            + String.format("%.2f", batchCount > 0 ? documents.sum() / (double) batchCount : 0));
+    System.out.println(
+        "[LOAD-BATCH], AverageKB, "
+            + String.format("%.2f", batchCount > 0 ? bytes.sum() / 1024.0 / batchCount : 0));
+    System.out.println("[LOAD-BATCH], Failures, " + failures.sum());
+  }
+}
@@ -0,0 +1,230 @@
+package com.example;
+
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import java.io.Closeable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Run phase on the reactive-streams driver. A fixed number of slots each keep one operation in
+ * flight and issue the next only when it completes, so ASYNC_IN_FLIGHT operations run at once from
+ * ASYNC_THREADS threads, and a slow server slows the client down instead of queueing without bound.
+ * Each slot is a worker as in {@link OperationWorker}: it has its own {@link OperationGenerator}
+ * and records into the same {@link MetricsManager}, so sync and async results compare directly.
+ */
+public class AsyncOperationEngine implements Closeable {
+  private static final Logger logger = LoggerFactory.getLogger(AsyncOperationEngine.class);
+  private static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
+  private static final Bson BY_INDEX = Sorts.ascending("index");
+
+  private final MongoClient mongoClient;
+  private final MongoCollection<Document> collection;
+  // The raw collection in raw mode, so reads bypass the Document codec
+  private final MongoCollection<?> readCollection;
+  // Inserts whole generated documents, raw or wrapped
+  private final MongoCollection<BsonDocument> documentCollection;
+  private final Supplier<OperationGenerator> operationGenerators;
+  private final int inFlight;
+  // Per-slot target rate; 0 runs closed-loop
+  private final double targetOpsPerSec;
+  private final MetricsManager metricsManager;
+  // Driver callbacks hand each slot's next operation to these threads, keeping request building
+  // (document generation) off the driver's I/O threads
+  private final ScheduledExecutorService executor;
+  private final AtomicLong remainingOperations;
+  private final AtomicInteger activeSlots = new AtomicInteger();
+
+  /**
+   * @param operationGenerators called once per slot
+   */
+  public AsyncOperationEngine(
+      String connectionString, Config config, Supplier<OperationGenerator> operationGenerators) {
+    this.mongoClient =
+        MongoClients.create(MongoClientSettingsBuilder.build(connectionString, config));
+    this.collection =
+        mongoClient.getDatabase(config.getDatabaseName()).getCollection(config.getCollectionName());
+    this.readCollection =
+        config.isRawDocuments() ? collection.withDocumentClass(RawBsonDocument.class) : collection;
+    this.documentCollection = collection.withDocumentClass(BsonDocument.class);
+    this.operationGenerators = operationGenerators;
+    this.inFlight = config.getAsyncInFlight();
+    // Same total operations and offered load as NUM_THREADS sync workers
+    this.remainingOperations = new AtomicLong(config.getTotalDocuments());
+    this.targetOpsPerSec = config.getTargetOpsPerSecPerThread() * config.getNumThreads() / inFlight;
+    this.metricsManager = MetricsManager.getInstance();
+    this.executor = new ScheduledThreadPoolExecutor(config.getAsyncThreads());
+  }
+
+  /**
+   * Starts every slot and returns the engine's executor, which shuts down once all operations have
+   * completed.
+   */
+  public ExecutorService start() {
+    logger.info(
+        "Async engine: {} operations in flight on {} threads{}",
+        inFlight,
+        ((ScheduledThreadPoolExecutor) executor).getCorePoolSize(),
+        targetOpsPerSec > 0 ? String.format(", %.1f ops/sec per slot", targetOpsPerSec) : "");
+    activeSlots.set(inFlight);
+    for (int i = 0; i < inFlight; i++) {
+      Slot slot = new Slot(operationGenerators.get());
+      executor.execute(slot::next);
+    }
+    return executor;
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+    mongoClient.close();
+  }
+
+  private class Slot {
+    private final OperationGenerator operations;
+    private final OperationPacer pacer;
+
+    Slot(OperationGenerator operations) {
+      this.operations = operations;
+      this.pacer = targetOpsPerSec > 0 ? new OperationPacer(targetOpsPerSec) : null;
+    }
+
+    void next() {
+      if (remainingOperations.getAndDecrement() <= 0) {
+        if (activeSlots.decrementAndGet() == 0) {
+          executor.shutdown();
+        }
+        return;
+      }
+      if (pacer == null) {
+        issue(System.nanoTime());
+        return;
+      }
+      long intendedStart = pacer.next();
+      long delay = intendedStart - System.nanoTime();
+      if (delay > 0) {
+        executor.schedule(() -> issue(intendedStart), delay, TimeUnit.NANOSECONDS);
+      } else {
+        issue(intendedStart);
+      }
+    }
+
+    private void issue(long intendedStart) {
+      OperationType type = operations.nextOperation();
+      long startTime = System.nanoTime();
+      Publisher<?> publisher;
+      Supplier<Publisher<?>> then = null;
+      switch (type) {
+        case UPDATE:
+          {
+            long key = operations.nextKey();
+            publisher =
+                collection.updateOne(operations.filter(key), operations.update(key), UPSERT);
+            break;
+          }
+        case INSERT:
+          publisher = documentCollection.insertOne(operations.document(operations.nextInsertKey()));
+          break;
+        case SCAN:
+          {
+            int length = operations.nextScanLength();
+            publisher =
+                readCollection
+                    .find(operations.scanFilter(operations.nextKey()))
+                    .sort(BY_INDEX)
+                    .limit(length)
+                    .batchSize(length);
+            break;
+          }
+        case READ_MODIFY_WRITE:
+          {
+            long key = operations.nextKey();
+            Bson filter = operations.filter(key);
+            Bson update = operations.update(key);
+            publisher = readCollection.find(filter).first();
+            then = () -> collection.updateOne(filter, update, UPSERT);
+            break;
+          }
+        case DELETE:
+          publisher = collection.deleteOne(operations.filter(operations.nextKey()));
+          break;
+        default:
+          publisher = readCollection.find(operations.filter(operations.nextKey())).first();
+      }
+      publisher.subscribe(new OperationSubscriber(this, type, intendedStart, startTime, then));
+    }
+  }
+
+  /** Completes one operation: records it, then hands the slot its next one. */
+  private class OperationSubscriber implements Subscriber<Object> {
+    private final Slot slot;
+    private final OperationType type;
+    private final long intendedStart;
+    private final long startTime;
+    // Second step of a READ-MODIFY-WRITE, issued once the read completes
+    private final Supplier<Publisher<?>> then;
+
+    OperationSubscriber(
+        Slot slot,
+        OperationType type,
+        long intendedStart,
+        long startTime,
+        Supplier<Publisher<?>> then) {
+      this.slot = slot;
+      this.type = type;
+      this.intendedStart = intendedStart;
+      this.startTime = startTime;
+      this.then = then;
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+      // Scans stream every document they match; all other operations publish at most one result
+      subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(Object result) {}
+
+    @Override
+    public void onError(Throwable t) {
+      logger.error("Operation failed: {}", t.getMessage(), t);
+      metricsManager.incrementFailedOperations();
+      executor.execute(slot::next);
+    }
+
+    @Override
+    public void onComplete() {
+      if (then != null) {
+        then.get().subscribe(new OperationSubscriber(slot, type, intendedStart, startTime, null));
+        return;
+      }
+      long endTime = System.nanoTime();
+      metricsManager.recordLatency(type, endTime - startTime);
+      if (targetOpsPerSec > 0) {
+        // Includes the time the operation waited behind earlier ones (coordinated omission)
+        metricsManager.recordIntendedLatency(type, endTime - intendedStart);
+      }
+      metricsManager.incrementOperations(type);
+      metricsManager.incrementTotalOperations();
+      executor.execute(slot::next);
+    }
+  }
+}
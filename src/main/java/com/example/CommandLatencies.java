@@ -0,0 +1,295 @@
+package com.example;
+
+import com.mongodb.ServerAddress;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Latency of each command as the driver saw it, from the command listener's elapsed times, per
+ * command name and server. Operations run by sync workers are also timed against the commands they
+ * sent: between {@link #begin} and {@link #end}, the listener adds each command's time to the
+ * operation on the same thread, and whatever else the operation took (pool checkout, encoding and
+ * decoding, waiting between retries) is reported as its client overhead. The async engine's
+ * commands complete on driver threads, apart from the operation, so it has no overhead figures.
+ */
+public class CommandLatencies implements MetricsReporter {
+  private static final OperationType[] TYPES = OperationType.values();
+  private static final CommandLatencies INSTANCE = new CommandLatencies();
+
+  private final Map<ServerAddress, Map<String, LatencyHistogram>> byServer =
+      new ConcurrentHashMap<>();
+  private final Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+  private final InFlightCommands inFlight = new InFlightCommands();
+  private volatile boolean overheadMeasured = true;
+  private final Map<OperationType, LatencyHistogram> driverTime =
+      new EnumMap<>(OperationType.class);
+  private final Map<OperationType, LatencyHistogram> overhead = new EnumMap<>(OperationType.class);
+  private final ThreadLocal<OperationTiming> current =
+      ThreadLocal.withInitial(OperationTiming::new);
+
+  private CommandLatencies() {
+    for (OperationType type : TYPES) {
+      driverTime.put(type, new LatencyHistogram());
+      overhead.put(type, new LatencyHistogram());
+    }
+  }
+
+  public static CommandLatencies getInstance() {
+    return INSTANCE;
+  }
+
+  public void commandStarted(int requestId) {
+    inFlight.add(requestId);
+  }
+
+  /** Leaves client overhead out of the report, for an engine that does not time operations. */
+  public void disableOverhead() {
+    overheadMeasured = false;
+  }
+
+  public void commandSucceeded(
+      int requestId, String command, ServerAddress server, long elapsedNanos) {
+    inFlight.remove(requestId);
+    byServer
+        .computeIfAbsent(server, address -> new ConcurrentHashMap<>())
+        .computeIfAbsent(command, name -> new LatencyHistogram())
+        .recordNanos(elapsedNanos);
+    addToOperation(elapsedNanos);
+  }
+
+  public void commandFailed(int requestId, String command, long elapsedNanos) {
+    inFlight.remove(requestId);
+    failures.computeIfAbsent(command, name -> new LongAdder()).increment();
+    addToOperation(elapsedNanos);
+    OperationTiming timing = current.get();
+    if (timing.type != null) {
+      timing.failedCommands++;
+    }
+  }
+
+  /** Starts timing an operation of {@code type} on this thread. */
+  public void begin(OperationType type) {
+    OperationTiming timing = current.get();
+    timing.type = type;
+    timing.start = System.nanoTime();
+    timing.commandNanos = 0;
+    timing.failedCommands = 0;
+  }
+
+  /**
+   * Ends the operation begun on this thread and records its driver time and client overhead. An
+   * operation that {@code succeeded} after a failed command is counted as retried.
+   */
+  public void end(boolean succeeded) {
+    OperationTiming timing = current.get();
+    if (timing.type == null) {
+      return;
+    }
+    long elapsed = System.nanoTime() - timing.start;
+    driverTime.get(timing.type).recordNanos(timing.commandNanos);
+    overhead.get(timing.type).recordNanos(Math.max(0, elapsed - timing.commandNanos));
+    if (succeeded && timing.failedCommands > 0) {
+      FailoverAnalyzer.getInstance().operationRetried();
+    }
+    timing.type = null;
+  }
+
+  private void addToOperation(long elapsedNanos) {
+    OperationTiming timing = current.get();
+    if (timing.type != null) {
+      timing.commandNanos += elapsedNanos;
+    }
+  }
+
+  @Override
+  public String intervalReport(double intervalSeconds) {
+    StringBuilder line = new StringBuilder("[COMMANDS:");
+    for (Map.Entry<String, Histogram> entry : sampleByCommand().entrySet()) {
+      Histogram histogram = entry.getValue();
+      if (histogram.getTotalCount() > 0) {
+        line.append(
+            String.format(
+                " %s Count=%d Avg=%.1f 99=%d,",
+                entry.getKey(),
+                histogram.getTotalCount(),
+                histogram.getMean(),
+                histogram.getValueAtPercentile(99)));
+      }
+    }
+    line.append(
+        String.format(" InFlight=%d, OldestMs=%d]", inFlight.size(), inFlight.oldestMillis()));
+    if (!overheadMeasured) {
+      return line.toString();
+    }
+    for (OperationType type : TYPES) {
+      Histogram driver = driverTime.get(type).sampleInterval();
+      Histogram client = overhead.get(type).sampleInterval();
+      if (client.getTotalCount() > 0) {
+        line.append(
+            String.format(
+                " [%s-OVERHEAD: Avg=%.1f, 99=%d, Share=%.1f%%]",
+                type.getLabel(),
+                client.getMean(),
+                client.getValueAtPercentile(99),
+                share(client.getMean(), driver.getMean())));
+      }
+    }
+    return line.toString();
+  }
+
+  @Override
+  public void printFinalReport() {
+    for (Map.Entry<ServerAddress, Map<String, LatencyHistogram>> server : byServer.entrySet()) {
+      for (Map.Entry<String, LatencyHistogram> command :
+          new TreeMap<>(server.getValue()).entrySet()) {
+        Histogram histogram = command.getValue().getCumulative();
+        if (histogram.getTotalCount() == 0) {
+          continue;
+        }
+        MetricsManager.printLatencyReport(
+            "COMMAND " + command.getKey() + "@" + server.getKey(),
+            histogram.getTotalCount(),
+            LatencySummary.of(histogram));
+      }
+    }
+    failures.forEach(
+        (command, count) ->
+            System.out.println("[COMMAND " + command + "], Failed, " + count.sum()));
+    if (!overheadMeasured) {
+      System.out.println("[OVERHEAD], ClientOverhead, not measured with ENGINE=async");
+      return;
+    }
+    for (OperationType type : TYPES) {
+      Histogram driver = driverTime.get(type).getCumulative();
+      Histogram client = overhead.get(type).getCumulative();
+      if (driver.getTotalCount() == 0) {
+        continue;
+      }
+      String label = "[" + type.getLabel() + "-OVERHEAD], ";
+      System.out.println(
+          label + "AverageDriverLatency(us), " + String.format("%.2f", driver.getMean()));
+      System.out.println(
+          label + "AverageClientOverhead(us), " + String.format("%.2f", client.getMean()));
+      System.out.println(
+          label + "99thPercentileClientOverhead(us), " + client.getValueAtPercentile(99));
+      System.out.println(
+          label
+              + "ClientOverheadShare(%), "
+              + String.format("%.2f", share(client.getMean(), driver.getMean())));
+    }
+  }
+
+  /**
+   * Latency of all commands on {@code server} over the interval last reported, or null if it ran
+   * none.
+   */
+  public Histogram lastInterval(ServerAddress server) {
+    Map<String, LatencyHistogram> commands = byServer.get(server);
+    if (commands == null) {
+      return null;
+    }
+    Histogram merged = null;
+    for (LatencyHistogram histogram : commands.values()) {
+      if (merged == null) {
+        merged = histogram.getLastInterval().copy();
+      } else {
+        merged.add(histogram.getLastInterval());
+      }
+    }
+    return merged;
+  }
+
+  // Closes the interval of every command on every server and merges them by command name
+  private Map<String, Histogram> sampleByCommand() {
+    Map<String, Histogram> merged = new TreeMap<>();
+    for (Map<String, LatencyHistogram> commands : byServer.values()) {
+      commands.forEach(
+          (command, histogram) -> {
+            Histogram interval = histogram.sampleInterval();
+            Histogram total = merged.get(command);
+            if (total == null) {
+              merged.put(command, interval);
+            } else {
+              total.add(interval);
+            }
+          });
+    }
+    return merged;
+  }
+
+  private static double share(double clientMean, double driverMean) {
+    double total = clientMean + driverMean;
+    return total > 0 ? 100 * clientMean / total : 0;
+  }
+
+  /**
+   * Start times of the commands still running, in an open-addressed table of longs that pack the
+   * start (in milliseconds since the table was made, plus one so a used slot is never zero) above
+   * the request id. A command claims the first free slot from its request id's home slot and keeps
+   * it until it ends, so no command is ever moved and the one that ends is found by probing from
+   * the same home slot. Commands beyond the table's capacity are counted but not aged.
+   */
+  private static final class InFlightCommands {
+    private static final int CAPACITY = 8192;
+    private static final int MASK = CAPACITY - 1;
+
+    private final AtomicLongArray slots = new AtomicLongArray(CAPACITY);
+    private final LongAdder count = new LongAdder();
+    private final long originNanos = System.nanoTime();
+
+    private void add(int requestId) {
+      count.increment();
+      long packed = (elapsedMillis() + 1) << 32 | (requestId & 0xFFFFFFFFL);
+      for (int i = 0; i < CAPACITY; i++) {
+        int slot = (requestId + i) & MASK;
+        if (slots.get(slot) == 0 && slots.compareAndSet(slot, 0, packed)) {
+          return;
+        }
+      }
+    }
+
+    private void remove(int requestId) {
+      count.decrement();
+      for (int i = 0; i < CAPACITY; i++) {
+        int slot = (requestId + i) & MASK;
+        long packed = slots.get(slot);
+        if (packed != 0 && (int) packed == requestId) {
+          slots.set(slot, 0);
+          return;
+        }
+      }
+    }
+
+    private long size() {
+      return count.sum();
+    }
+
+    private long oldestMillis() {
+      long now = elapsedMillis() + 1;
+      long oldest = 0;
+      for (int slot = 0; slot < CAPACITY; slot++) {
+        long packed = slots.get(slot);
+        if (packed != 0) {
+          oldest = Math.max(oldest, now - (packed >>> 32));
+        }
+      }
+      return oldest;
+    }
+
+    private long elapsedMillis() {
+      return (System.nanoTime() - originNanos) / 1_000_000;
+    }
+  }
+
+  private static final class OperationTiming {
+    private OperationType type;
+    private long start;
+    private long commandNanos;
+    private int failedCommands;
+  }
+}
@@ -1,5 +1,9 @@
 package com.example;
 
+import com.example.keys.KeyDistribution;
+import java.util.Map;
+import java.util.SplittableRandom;
+
 public class Config {
   private final String connectionString;
   private final String databaseName;
@@ -7,9 +11,68 @@ public class Config {
   private final double totalDataSizeGB;
   private final int writePercentage;
   private final int numThreads;
-  private final int documentsPerThread;
+  private final long totalDocuments;
+  private final long documentsPerThread;
   private final int targetDocumentSize;
   private final boolean sharded;
+  private final int reportIntervalSeconds;
+  private final String metricsTimelineFile;
+  private final double targetOpsPerSec;
+  private final boolean targetOpsPerThread;
+  private final KeyDistribution keyDistribution;
+  private final double zipfianConstant;
+  private final double hotspotDataFraction;
+  private final double hotspotOpnFraction;
+  private final boolean pipelinedLoad;
+  private final int loadBatchSize;
+  private final int loadGeneratorThreads;
+  private final int loadWriterThreads;
+  private final int loadWriterInFlight;
+  private final int loadQueueCapacity;
+  private final boolean rawDocuments;
+  private final int valuePoolSize;
+  private final boolean valuePoolParallel;
+  private final boolean seeded;
+  private final long seed;
+  private final boolean nullServer;
+  private final long nullServerLatencyMicros;
+  private final long nullServerJitterMicros;
+  private final double nullServerErrorRate;
+  private final boolean asyncEngine;
+  private final int asyncInFlight;
+  private final int asyncThreads;
+  private final boolean virtualThreads;
+  private final long pinnedThresholdMillis;
+  private final int connectionPoolMaxSize;
+  private final int connectionPoolMinSize;
+  private final int readBatchSize;
+  private final boolean readBatchShared;
+  private final long readBatchWindowMicros;
+  private final int writeBatchSize;
+  private final long writeBatchFlushMillis;
+  private final boolean writeBatchReplace;
+  private final Map<UpdateShape, Integer> updateMix;
+  private final int updatePushSlice;
+  private final Workload workload;
+  private final boolean adaptiveLoadBatch;
+  private final int loadBatchMaxBytes;
+  private final long loadBatchMaxLatencyMillis;
+  private final String loadCheckpointFile;
+  private final int loadCheckpointIntervalMillis;
+  private final boolean loadBackfill;
+  private final int loadWorkUnitsPerThread;
+  private final boolean connectionPoolPerCaller;
+  private final boolean failoverAnalysis;
+  private final long failoverResolutionMillis;
+  private final long failoverBaselineSeconds;
+  private final boolean rttAwareReads;
+  private final double rttDegradedFactor;
+  private final String serverHealthFile;
+  private final boolean flightRecorder;
+  private final int flightRecorderEvents;
+  private final String flightRecorderDir;
+  private final boolean flightRecorderBinary;
+  private final long flightRecorderLatencyMillis;
 
   private Config(
       String connectionString,
@@ -19,7 +82,64 @@ public class Config {
       int writePercentage,
       int numThreads,
       int targetDocumentSize,
-      boolean sharded) {
+      boolean sharded,
+      int reportIntervalSeconds,
+      String metricsTimelineFile,
+      double targetOpsPerSec,
+      boolean targetOpsPerThread,
+      KeyDistribution keyDistribution,
+      double zipfianConstant,
+      double hotspotDataFraction,
+      double hotspotOpnFraction,
+      boolean pipelinedLoad,
+      int loadBatchSize,
+      int loadGeneratorThreads,
+      int loadWriterThreads,
+      int loadWriterInFlight,
+      int loadQueueCapacity,
+      boolean rawDocuments,
+      int valuePoolSize,
+      boolean valuePoolParallel,
+      Long seed,
+      boolean nullServer,
+      long nullServerLatencyMicros,
+      long nullServerJitterMicros,
+      double nullServerErrorRate,
+      boolean asyncEngine,
+      int asyncInFlight,
+      int asyncThreads,
+      boolean virtualThreads,
+      long pinnedThresholdMillis,
+      int connectionPoolMaxSize,
+      int connectionPoolMinSize,
+      int readBatchSize,
+      boolean readBatchShared,
+      long readBatchWindowMicros,
+      int writeBatchSize,
+      long writeBatchFlushMillis,
+      boolean writeBatchReplace,
+      Map<UpdateShape, Integer> updateMix,
+      int updatePushSlice,
+      Workload workload,
+      boolean adaptiveLoadBatch,
+      int loadBatchMaxBytes,
+      long loadBatchMaxLatencyMillis,
+      String loadCheckpointFile,
+      int loadCheckpointIntervalMillis,
+      boolean loadBackfill,
+      int loadWorkUnitsPerThread,
+      boolean connectionPoolPerCaller,
+      boolean failoverAnalysis,
+      long failoverResolutionMillis,
+      long failoverBaselineSeconds,
+      boolean rttAwareReads,
+      double rttDegradedFactor,
+      String serverHealthFile,
+      boolean flightRecorder,
+      int flightRecorderEvents,
+      String flightRecorderDir,
+      boolean flightRecorderBinary,
+      long flightRecorderLatencyMillis) {
     this.connectionString = connectionString;
     this.databaseName = databaseName;
     this.collectionName = collectionName;
@@ -27,21 +147,147 @@ public class Config {
     this.writePercentage = writePercentage;
     this.numThreads = numThreads;
     this.targetDocumentSize = targetDocumentSize;
-    long totalDocuments = (long) (totalDataSizeGB * 1024 * 1024 * 1024) / targetDocumentSize;
-    this.documentsPerThread = (int) (totalDocuments / numThreads);
+    this.totalDocuments = (long) (totalDataSizeGB * 1024 * 1024 * 1024) / targetDocumentSize;
+    this.documentsPerThread = totalDocuments / numThreads;
     this.sharded = sharded;
+    this.reportIntervalSeconds = reportIntervalSeconds;
+    this.metricsTimelineFile = metricsTimelineFile;
+    this.targetOpsPerSec = targetOpsPerSec;
+    this.targetOpsPerThread = targetOpsPerThread;
+    this.keyDistribution = keyDistribution;
+    this.zipfianConstant = zipfianConstant;
+    this.hotspotDataFraction = hotspotDataFraction;
+    this.hotspotOpnFraction = hotspotOpnFraction;
+    this.pipelinedLoad = pipelinedLoad;
+    this.loadBatchSize = loadBatchSize;
+    this.loadGeneratorThreads = loadGeneratorThreads;
+    this.loadWriterThreads = loadWriterThreads;
+    this.loadWriterInFlight = loadWriterInFlight;
+    this.loadQueueCapacity = loadQueueCapacity;
+    this.rawDocuments = rawDocuments;
+    this.valuePoolSize = valuePoolSize;
+    this.valuePoolParallel = valuePoolParallel;
+    this.seeded = seed != null;
+    this.seed = seeded ? seed : new SplittableRandom().nextLong();
+    this.nullServer = nullServer;
+    this.nullServerLatencyMicros = nullServerLatencyMicros;
+    this.nullServerJitterMicros = nullServerJitterMicros;
+    this.nullServerErrorRate = nullServerErrorRate;
+    this.asyncEngine = asyncEngine;
+    this.asyncInFlight = asyncInFlight;
+    this.asyncThreads = asyncThreads;
+    this.virtualThreads = virtualThreads;
+    this.pinnedThresholdMillis = pinnedThresholdMillis;
+    this.connectionPoolMaxSize = connectionPoolMaxSize;
+    this.connectionPoolMinSize = connectionPoolMinSize;
+    this.readBatchSize = readBatchSize;
+    this.readBatchShared = readBatchShared;
+    this.readBatchWindowMicros = readBatchWindowMicros;
+    this.writeBatchSize = writeBatchSize;
+    this.writeBatchFlushMillis = writeBatchFlushMillis;
+    this.writeBatchReplace = writeBatchReplace;
+    this.updateMix = updateMix;
+    this.updatePushSlice = updatePushSlice;
+    this.workload = workload;
+    this.adaptiveLoadBatch = adaptiveLoadBatch;
+    this.loadBatchMaxBytes = loadBatchMaxBytes;
+    this.loadBatchMaxLatencyMillis = loadBatchMaxLatencyMillis;
+    this.loadCheckpointFile = loadCheckpointFile;
+    this.loadCheckpointIntervalMillis = loadCheckpointIntervalMillis;
+    this.loadBackfill = loadBackfill;
+    this.loadWorkUnitsPerThread = loadWorkUnitsPerThread;
+    this.connectionPoolPerCaller = connectionPoolPerCaller;
+    this.failoverAnalysis = failoverAnalysis;
+    this.failoverResolutionMillis = failoverResolutionMillis;
+    this.failoverBaselineSeconds = failoverBaselineSeconds;
+    this.rttAwareReads = rttAwareReads;
+    this.rttDegradedFactor = rttDegradedFactor;
+    this.serverHealthFile = serverHealthFile;
+    this.flightRecorder = flightRecorder;
+    this.flightRecorderEvents = flightRecorderEvents;
+    this.flightRecorderDir = flightRecorderDir;
+    this.flightRecorderBinary = flightRecorderBinary;
+    this.flightRecorderLatencyMillis = flightRecorderLatencyMillis;
   }
 
   public static Config fromEnv() {
+    int writePercentage = Integer.parseInt(System.getenv().getOrDefault("WRITE_PERCENTAGE", "5"));
+    Workload workload = Workload.fromEnv(System.getenv(), writePercentage);
     return new Config(
         System.getenv("MONGODB_URI"),
         System.getenv().getOrDefault("MONGODB_DATABASE", "java"),
         System.getenv().getOrDefault("MONGODB_COLLECTION", "usertable"),
         Double.parseDouble(System.getenv().getOrDefault("TOTAL_DATA_SIZE_GB", "0.5")),
-        Integer.parseInt(System.getenv().getOrDefault("WRITE_PERCENTAGE", "5")),
+        writePercentage,
         Integer.parseInt(System.getenv().getOrDefault("NUM_THREADS", "32")),
         Integer.parseInt(System.getenv().getOrDefault("TARGET_DOCUMENT_SIZE", "1024")),
-        Boolean.parseBoolean(System.getenv().getOrDefault("SHARDED", "false")));
+        Boolean.parseBoolean(System.getenv().getOrDefault("SHARDED", "false")),
+        Integer.parseInt(System.getenv().getOrDefault("REPORT_INTERVAL_SECONDS", "10")),
+        System.getenv("METRICS_TIMELINE_FILE"),
+        Double.parseDouble(System.getenv().getOrDefault("TARGET_OPS_PER_SEC", "0")),
+        "thread".equalsIgnoreCase(System.getenv().getOrDefault("TARGET_OPS_SCOPE", "global")),
+        KeyDistribution.parse(
+            System.getenv().getOrDefault("KEY_DISTRIBUTION", workload.getKeyDistribution())),
+        Double.parseDouble(System.getenv().getOrDefault("ZIPFIAN_CONSTANT", "0.99")),
+        Double.parseDouble(System.getenv().getOrDefault("HOTSPOT_DATA_FRACTION", "0.2")),
+        Double.parseDouble(System.getenv().getOrDefault("HOTSPOT_OPN_FRACTION", "0.8")),
+        "pipelined".equalsIgnoreCase(System.getenv().getOrDefault("LOAD_MODE", "batch")),
+        Integer.parseInt(System.getenv().getOrDefault("LOAD_BATCH_SIZE", "1000")),
+        Integer.parseInt(
+            System.getenv()
+                .getOrDefault(
+                    "LOAD_GENERATOR_THREADS",
+                    String.valueOf(Runtime.getRuntime().availableProcessors()))),
+        Integer.parseInt(System.getenv().getOrDefault("LOAD_WRITER_THREADS", "8")),
+        Integer.parseInt(System.getenv().getOrDefault("LOAD_WRITER_IN_FLIGHT", "2")),
+        Integer.parseInt(System.getenv().getOrDefault("LOAD_QUEUE_CAPACITY", "32")),
+        "raw".equalsIgnoreCase(System.getenv().getOrDefault("DOCUMENT_FORMAT", "document")),
+        Integer.parseInt(System.getenv().getOrDefault("VALUE_POOL_SIZE", "0")),
+        Boolean.parseBoolean(System.getenv().getOrDefault("VALUE_POOL_PARALLEL", "true")),
+        System.getenv("SEED") != null ? Long.parseLong(System.getenv("SEED")) : null,
+        Boolean.parseBoolean(System.getenv().getOrDefault("NULL_SERVER", "false")),
+        Long.parseLong(System.getenv().getOrDefault("NULL_SERVER_LATENCY_MICROS", "0")),
+        Long.parseLong(System.getenv().getOrDefault("NULL_SERVER_JITTER_MICROS", "0")),
+        Double.parseDouble(System.getenv().getOrDefault("NULL_SERVER_ERROR_RATE", "0")),
+        "async".equalsIgnoreCase(System.getenv().getOrDefault("ENGINE", "sync")),
+        Integer.parseInt(System.getenv().getOrDefault("ASYNC_IN_FLIGHT", "256")),
+        Integer.parseInt(
+            System.getenv()
+                .getOrDefault(
+                    "ASYNC_THREADS", String.valueOf(Runtime.getRuntime().availableProcessors()))),
+        "virtual".equalsIgnoreCase(System.getenv().getOrDefault("THREAD_MODE", "platform")),
+        Long.parseLong(System.getenv().getOrDefault("PINNED_THRESHOLD_MS", "20")),
+        Integer.parseInt(System.getenv().getOrDefault("CONNECTION_POOL_MAX_SIZE", "100")),
+        Integer.parseInt(System.getenv().getOrDefault("CONNECTION_POOL_MIN_SIZE", "20")),
+        Integer.parseInt(System.getenv().getOrDefault("READ_BATCH_SIZE", "1")),
+        "shared".equalsIgnoreCase(System.getenv().getOrDefault("READ_BATCH_SCOPE", "thread")),
+        Long.parseLong(System.getenv().getOrDefault("READ_BATCH_WINDOW_MICROS", "1000")),
+        Integer.parseInt(System.getenv().getOrDefault("WRITE_BATCH_SIZE", "1")),
+        Long.parseLong(System.getenv().getOrDefault("WRITE_BATCH_FLUSH_MS", "100")),
+        "replace".equalsIgnoreCase(System.getenv().getOrDefault("WRITE_BATCH_MODEL", "update")),
+        UpdateShape.parseMix(System.getenv().getOrDefault("UPDATE_MIX", "full")),
+        Integer.parseInt(System.getenv().getOrDefault("UPDATE_PUSH_SLICE", "10")),
+        workload,
+        "adaptive".equalsIgnoreCase(System.getenv().getOrDefault("LOAD_BATCH_SIZING", "fixed")),
+        Integer.parseInt(System.getenv().getOrDefault("LOAD_BATCH_MAX_BYTES", "48000000")),
+        Long.parseLong(System.getenv().getOrDefault("LOAD_BATCH_MAX_LATENCY_MS", "1000")),
+        System.getenv("LOAD_CHECKPOINT_FILE"),
+        Integer.parseInt(System.getenv().getOrDefault("LOAD_CHECKPOINT_INTERVAL_MS", "5000")),
+        Boolean.parseBoolean(System.getenv().getOrDefault("LOAD_BACKFILL", "true")),
+        Integer.parseInt(System.getenv().getOrDefault("LOAD_WORK_UNITS_PER_THREAD", "16")),
+        "per-caller"
+            .equalsIgnoreCase(System.getenv().getOrDefault("CONNECTION_POOL_SIZING", "fixed")),
+        Boolean.parseBoolean(System.getenv().getOrDefault("FAILOVER_ANALYSIS", "false")),
+        Long.parseLong(System.getenv().getOrDefault("FAILOVER_RESOLUTION_MS", "100")),
+        Long.parseLong(System.getenv().getOrDefault("FAILOVER_BASELINE_SECONDS", "10")),
+        Boolean.parseBoolean(System.getenv().getOrDefault("RTT_AWARE_READS", "false")),
+        Double.parseDouble(System.getenv().getOrDefault("RTT_DEGRADED_FACTOR", "2.0")),
+        System.getenv("SERVER_HEALTH_FILE"),
+        Boolean.parseBoolean(System.getenv().getOrDefault("FLIGHT_RECORDER", "false")),
+        Integer.parseInt(System.getenv().getOrDefault("FLIGHT_RECORDER_EVENTS", "65536")),
+        System.getenv().getOrDefault("FLIGHT_RECORDER_DIR", "."),
+        "binary".equalsIgnoreCase(System.getenv().getOrDefault("FLIGHT_RECORDER_FORMAT", "json")),
+        Long.parseLong(System.getenv().getOrDefault("FLIGHT_RECORDER_LATENCY_MS", "0")));
   }
 
   // Getters for all fields
@@ -69,10 +315,15 @@ public class Config {
     return numThreads;
   }
 
-  public int getDocumentsPerThread() {
+  public long getDocumentsPerThread() {
     return documentsPerThread;
   }
 
+  // Number of documents the load phase inserts, i.e. the key space [0, total) of the run phase
+  public long getTotalDocuments() {
+    return totalDocuments;
+  }
+
   public int getTargetDocumentSize() {
     return targetDocumentSize;
   }
@@ -80,4 +331,265 @@ public class Config {
   public boolean sharded() {
     return sharded;
   }
+
+  public int getReportIntervalSeconds() {
+    return reportIntervalSeconds;
+  }
+
+  public String getMetricsTimelineFile() {
+    return metricsTimelineFile;
+  }
+
+  public boolean isRateLimited() {
+    return targetOpsPerSec > 0;
+  }
+
+  // TARGET_OPS_PER_SEC is split evenly across threads unless TARGET_OPS_SCOPE=thread
+  public double getTargetOpsPerSecPerThread() {
+    return targetOpsPerThread ? targetOpsPerSec : targetOpsPerSec / numThreads;
+  }
+
+  public KeyDistribution getKeyDistribution() {
+    return keyDistribution;
+  }
+
+  public double getZipfianConstant() {
+    return zipfianConstant;
+  }
+
+  public double getHotspotDataFraction() {
+    return hotspotDataFraction;
+  }
+
+  public double getHotspotOpnFraction() {
+    return hotspotOpnFraction;
+  }
+
+  public boolean isPipelinedLoad() {
+    return pipelinedLoad;
+  }
+
+  public int getLoadBatchSize() {
+    return loadBatchSize;
+  }
+
+  public int getLoadGeneratorThreads() {
+    return loadGeneratorThreads;
+  }
+
+  public int getLoadWriterThreads() {
+    return loadWriterThreads;
+  }
+
+  public int getLoadWriterInFlight() {
+    return loadWriterInFlight;
+  }
+
+  public int getLoadQueueCapacity() {
+    return loadQueueCapacity;
+  }
+
+  // DOCUMENT_FORMAT=raw writes documents straight to BSON and skips the Document codec
+  public boolean isRawDocuments() {
+    return rawDocuments;
+  }
+
+  // VALUE_POOL_SIZE > 0 draws field values from a pool built at startup instead of calling Faker
+  public boolean isValuePoolEnabled() {
+    return valuePoolSize > 0;
+  }
+
+  public int getValuePoolSize() {
+    return valuePoolSize;
+  }
+
+  public boolean isValuePoolParallel() {
+    return valuePoolParallel;
+  }
+
+  // True when SEED was set: generated data and operation sequences are then reproducible
+  public boolean isSeeded() {
+    return seeded;
+  }
+
+  // SEED, or a random seed that can be passed as SEED to reproduce this run's data
+  public long getSeed() {
+    return seed;
+  }
+
+  // NULL_SERVER=true runs against an in-process stand-in server instead of MONGODB_URI
+  public boolean isNullServer() {
+    return nullServer;
+  }
+
+  public long getNullServerLatencyMicros() {
+    return nullServerLatencyMicros;
+  }
+
+  public long getNullServerJitterMicros() {
+    return nullServerJitterMicros;
+  }
+
+  public double getNullServerErrorRate() {
+    return nullServerErrorRate;
+  }
+
+  // ENGINE=async runs the load test on the reactive-streams driver instead of NUM_THREADS workers
+  public boolean isAsyncEngine() {
+    return asyncEngine;
+  }
+
+  public int getAsyncInFlight() {
+    return asyncInFlight;
+  }
+
+  public int getAsyncThreads() {
+    return asyncThreads;
+  }
+
+  // THREAD_MODE=virtual runs each of the NUM_THREADS loaders/workers on its own virtual thread
+  public boolean isVirtualThreads() {
+    return virtualThreads;
+  }
+
+  public long getPinnedThresholdMillis() {
+    return pinnedThresholdMillis;
+  }
+
+  public int getConnectionPoolMaxSize() {
+    return connectionPoolPerCaller
+        ? ConnectionPoolMetrics.perCallerSize(this)
+        : connectionPoolMaxSize;
+  }
+
+  public int getConnectionPoolMinSize() {
+    return connectionPoolMinSize;
+  }
+
+  // READ_BATCH_SIZE > 1 coalesces point reads into find({index: {$in: [...]}}) multi-gets
+  public boolean isReadBatching() {
+    return readBatchSize > 1;
+  }
+
+  public int getReadBatchSize() {
+    return readBatchSize;
+  }
+
+  // READ_BATCH_SCOPE=shared coalesces reads from all workers instead of each worker's own
+  public boolean isReadBatchShared() {
+    return readBatchShared;
+  }
+
+  public long getReadBatchWindowMicros() {
+    return readBatchWindowMicros;
+  }
+
+  // WRITE_BATCH_SIZE > 1 groups updates into unordered bulkWrite calls
+  public boolean isWriteBatching() {
+    return writeBatchSize > 1;
+  }
+
+  public int getWriteBatchSize() {
+    return writeBatchSize;
+  }
+
+  public long getWriteBatchFlushMillis() {
+    return writeBatchFlushMillis;
+  }
+
+  // WRITE_BATCH_MODEL=replace sends whole documents (ReplaceOneModel) instead of $set updates
+  public boolean isWriteBatchReplace() {
+    return writeBatchReplace;
+  }
+
+  // UPDATE_MIX weights the update shapes, e.g. "inc=50,set=30,push=20" (default: full only)
+  public Map<UpdateShape, Integer> getUpdateMix() {
+    return updateMix;
+  }
+
+  public int getUpdatePushSlice() {
+    return updatePushSlice;
+  }
+
+  // WORKLOAD=a..f runs a YCSB core workload; otherwise WRITE_PERCENTAGE splits reads and updates
+  public Workload getWorkload() {
+    return workload;
+  }
+
+  // LOAD_BATCH_SIZING=adaptive lets batch-mode loaders tune LOAD_BATCH_SIZE as they go
+  public boolean isAdaptiveLoadBatch() {
+    return adaptiveLoadBatch;
+  }
+
+  public int getLoadBatchMaxBytes() {
+    return loadBatchMaxBytes;
+  }
+
+  public long getLoadBatchMaxLatencyMillis() {
+    return loadBatchMaxLatencyMillis;
+  }
+
+  public String getLoadCheckpointFile() {
+    return loadCheckpointFile;
+  }
+
+  public int getLoadCheckpointIntervalMillis() {
+    return loadCheckpointIntervalMillis;
+  }
+
+  public boolean isLoadBackfill() {
+    return loadBackfill;
+  }
+
+  public int getLoadWorkUnitsPerThread() {
+    return loadWorkUnitsPerThread;
+  }
+
+  public boolean isConnectionPoolPerCaller() {
+    return connectionPoolPerCaller;
+  }
+
+  public boolean isFailoverAnalysis() {
+    return failoverAnalysis;
+  }
+
+  public long getFailoverResolutionMillis() {
+    return failoverResolutionMillis;
+  }
+
+  public long getFailoverBaselineSeconds() {
+    return failoverBaselineSeconds;
+  }
+
+  public boolean isRttAwareReads() {
+    return rttAwareReads;
+  }
+
+  public double getRttDegradedFactor() {
+    return rttDegradedFactor;
+  }
+
+  public String getServerHealthFile() {
+    return serverHealthFile;
+  }
+
+  public boolean isFlightRecorder() {
+    return flightRecorder;
+  }
+
+  public int getFlightRecorderEvents() {
+    return flightRecorderEvents;
+  }
+
+  public String getFlightRecorderDir() {
+    return flightRecorderDir;
+  }
+
+  public boolean isFlightRecorderBinary() {
+    return flightRecorderBinary;
+  }
+
+  public long getFlightRecorderLatencyMillis() {
+    return flightRecorderLatencyMillis;
+  }
 }
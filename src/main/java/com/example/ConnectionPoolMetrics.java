@@ -0,0 +1,193 @@
+package com.example;
+
+import com.mongodb.ServerAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Connection pool gauges and checkout wait times per server, fed by the pool listener. The wait is
+ * the time from check-out started to checked out, timed on the thread that asked for the
+ * connection, which is where the sync driver raises both events. The events carry nothing else to
+ * pair them by, and the reactive-streams driver completes checkouts on its own threads, so waits
+ * are not timed under ENGINE=async. A pool whose connections were all in use while checkouts waited
+ * (or, without wait times, timed out) is reported as saturated, with the size that would have
+ * served the peak demand.
+ */
+public class ConnectionPoolMetrics implements MetricsReporter {
+  private static final ConnectionPoolMetrics INSTANCE = new ConnectionPoolMetrics();
+  // Waits below this are queueing on the pool lock, not for a connection
+  private static final long SATURATED_WAIT_MICROS = 1000;
+  // Upper bound of a pool sized per caller, per server
+  private static final int PER_CALLER_MAX_SIZE = 1000;
+
+  private final Map<ServerAddress, Pool> pools = new ConcurrentHashMap<>();
+  private final ThreadLocal<long[]> checkoutStart = ThreadLocal.withInitial(() -> new long[1]);
+  private volatile boolean checkoutWaits = true;
+
+  private ConnectionPoolMetrics() {}
+
+  public static ConnectionPoolMetrics getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Stops timing checkout waits, for a driver that does not raise checkout events on one thread.
+   */
+  public void disableCheckoutWaits() {
+    checkoutWaits = false;
+  }
+
+  public void poolCreated(ServerAddress server, int maxSize) {
+    pool(server).maxSize = maxSize;
+  }
+
+  public void checkOutStarted(ServerAddress server) {
+    if (checkoutWaits) {
+      checkoutStart.get()[0] = System.nanoTime();
+    }
+    Pool pool = pool(server);
+    int waiting = pool.waiting.incrementAndGet();
+    pool.peakWaiting.accumulateAndGet(waiting, Math::max);
+    // Connections wanted at once: those in use plus every checkout under way
+    pool.peakDemand.accumulateAndGet(waiting + pool.inUse.get(), Math::max);
+  }
+
+  public void checkedOut(ServerAddress server) {
+    Pool pool = pool(server);
+    if (checkoutWaits) {
+      long[] start = checkoutStart.get();
+      if (start[0] != 0) {
+        pool.checkoutWait.recordNanos(System.nanoTime() - start[0]);
+        start[0] = 0;
+      }
+    }
+    pool.waiting.decrementAndGet();
+    pool.peakInUse.accumulateAndGet(pool.inUse.incrementAndGet(), Math::max);
+  }
+
+  /** A checkout that gave up; {@code timeout} if no connection became free in time. */
+  public void checkOutFailed(ServerAddress server, boolean timeout) {
+    Pool pool = pool(server);
+    if (checkoutWaits) {
+      checkoutStart.get()[0] = 0;
+    }
+    pool.waiting.decrementAndGet();
+    (timeout ? pool.timeouts : pool.failures).increment();
+  }
+
+  public void checkedIn(ServerAddress server) {
+    pool(server).inUse.decrementAndGet();
+  }
+
+  public void connectionCreated(ServerAddress server) {
+    Pool pool = pool(server);
+    pool.open.incrementAndGet();
+    pool.created.increment();
+  }
+
+  public void connectionClosed(ServerAddress server) {
+    Pool pool = pool(server);
+    pool.open.decrementAndGet();
+    pool.closed.increment();
+  }
+
+  private Pool pool(ServerAddress server) {
+    return pools.computeIfAbsent(server, address -> new Pool());
+  }
+
+  @Override
+  public String intervalReport(double intervalSeconds) {
+    StringBuilder line = new StringBuilder();
+    pools.forEach(
+        (server, pool) -> {
+          Histogram wait = pool.checkoutWait.sampleInterval();
+          int inUse = pool.inUse.get();
+          if (line.length() > 0) {
+            line.append(' ');
+          }
+          line.append(
+              String.format(
+                  "[POOL %s: InUse=%d, Idle=%d, Waiting=%d, Max=%d, Created=%d, Closed=%d,"
+                      + " Timeouts=%d",
+                  server,
+                  inUse,
+                  Math.max(0, pool.open.get() - inUse),
+                  pool.waiting.get(),
+                  pool.maxSize,
+                  pool.created.sum(),
+                  pool.closed.sum(),
+                  pool.timeouts.sum()));
+          if (checkoutWaits) {
+            line.append(
+                String.format(
+                    ", WaitAvg=%.1f, Wait99=%d", wait.getMean(), wait.getValueAtPercentile(99)));
+          }
+          line.append(']');
+        });
+    return line.length() > 0 ? line.toString() : null;
+  }
+
+  @Override
+  public void printFinalReport() {
+    pools.forEach(
+        (server, pool) -> {
+          Histogram wait = pool.checkoutWait.getCumulative();
+          String label = "[POOL " + server + "], ";
+          if (checkoutWaits) {
+            MetricsManager.printLatencyReport(
+                "POOL-WAIT " + server, wait.getTotalCount(), LatencySummary.of(wait));
+          } else {
+            System.out.println(label + "CheckoutWait, not timed with ENGINE=async");
+          }
+          System.out.println(label + "MaxSize, " + pool.maxSize);
+          System.out.println(label + "PeakInUse, " + pool.peakInUse.get());
+          System.out.println(label + "PeakWaiting, " + pool.peakWaiting.get());
+          System.out.println(label + "Created, " + pool.created.sum());
+          System.out.println(label + "Closed, " + pool.closed.sum());
+          System.out.println(label + "CheckoutTimeouts, " + pool.timeouts.sum());
+          System.out.println(label + "CheckoutFailures, " + pool.failures.sum());
+          boolean saturated =
+              pool.peakInUse.get() >= pool.maxSize
+                  && (pool.timeouts.sum() > 0
+                      || wait.getValueAtPercentile(99) > SATURATED_WAIT_MICROS);
+          System.out.println(label + "Saturated, " + saturated);
+          if (saturated) {
+            System.out.println(label + "RecommendedMaxSize, " + pool.peakDemand.get());
+          }
+        });
+  }
+
+  /**
+   * Max pool size for CONNECTION_POOL_SIZING=per-caller: one connection per concurrent caller. It
+   * is worked out from the configuration, not from observed waits; a saturated pool's
+   * RecommendedMaxSize is the measured figure.
+   */
+  static int perCallerSize(Config config) {
+    int callers = config.getNumThreads();
+    if (config.isPipelinedLoad()) {
+      callers = Math.max(callers, config.getLoadWriterThreads() * config.getLoadWriterInFlight());
+    }
+    if (config.isAsyncEngine()) {
+      callers = Math.max(callers, config.getAsyncInFlight());
+    }
+    return Math.max(1, Math.min(callers, PER_CALLER_MAX_SIZE));
+  }
+
+  private static final class Pool {
+    private final LatencyHistogram checkoutWait = new LatencyHistogram();
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger peakInUse = new AtomicInteger();
+    private final AtomicInteger peakWaiting = new AtomicInteger();
+    private final AtomicInteger peakDemand = new AtomicInteger();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder closed = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private volatile int maxSize;
+  }
+}
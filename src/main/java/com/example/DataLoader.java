@@ -1,90 +1,225 @@
 package com.example;
 
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
 import com.mongodb.MongoException;
+import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
-import org.bson.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class DataLoader implements Runnable {
+public class DataLoader<T> implements Runnable {
   private static final Logger logger = LoggerFactory.getLogger(DataLoader.class);
   private static final int MAX_RETRIES = 5;
   private static final int RETRY_DELAY_MS = 1000;
+  // The server inserts every document it can, so a failure only leaves out the ones it names
+  private static final InsertManyOptions UNORDERED = new InsertManyOptions().ordered(false);
 
-  private final MongoCollection<Document> collection;
-  private final int documentsToLoad;
-  private final int startIndex;
-  private final int targetDocumentSize;
+  private final MongoCollection<T> collection;
+  private final KeyspacePartitioner partitioner;
+  private final int batchSize;
+  private final DocumentFactory<T> documentFactory;
+  // Null for fixed-size batches
+  private final AdaptiveBatchSizer<T> sizer;
+  // Null when the load is not checkpointed
+  private final LoadCheckpoint checkpoint;
   private final MetricsManager metricsManager;
   private final int threadId;
 
   public DataLoader(
-      MongoCollection<Document> collection,
-      int documentsToLoad,
-      int startIndex,
-      int targetDocumentSize,
+      MongoCollection<T> collection,
+      KeyspacePartitioner partitioner,
+      int batchSize,
+      DocumentFactory<T> documentFactory,
+      AdaptiveBatchSizer<T> sizer,
+      LoadCheckpoint checkpoint,
       int threadId) {
     this.collection = collection;
-    this.documentsToLoad = documentsToLoad;
-    this.startIndex = startIndex;
-    this.targetDocumentSize = targetDocumentSize;
+    this.partitioner = partitioner;
+    this.batchSize = batchSize;
+    this.documentFactory = documentFactory;
+    this.sizer = sizer;
+    this.checkpoint = checkpoint;
     this.metricsManager = MetricsManager.getInstance();
     this.threadId = threadId;
   }
 
   @Override
   public void run() {
-    loadDocuments();
+    int unit;
+    while ((unit = partitioner.next(threadId)) >= 0) {
+      if (!loadUnit(unit)) {
+        return;
+      }
+    }
   }
 
-  private void loadDocuments() {
-    List<Document> batch = new ArrayList<>();
-    int retries = 0;
-    for (int i = 0; i < documentsToLoad; i++) {
-      batch.add(DocumentGenerator.generateRichDocument(startIndex + i, targetDocumentSize));
+  /**
+   * Loads work unit {@code unit} in batches that never cross its end. Returns false if interrupted.
+   */
+  private boolean loadUnit(int unit) {
+    long first = partitioner.unitStart(unit);
+    long end = partitioner.unitEnd(unit);
+    if (checkpoint != null) {
+      first = checkpoint.resumeFrom(unit);
+    }
+    List<T> batch = new ArrayList<>(batchSize);
+    long batchBytes = 0;
+    for (long index = first; index < end; index++) {
+      T document = documentFactory.generate(index);
+      if (sizer != null) {
+        int documentBytes = sizer.encodedSize(document);
+        // Send what we have rather than let the batch outgrow the byte limit
+        if (!batch.isEmpty() && batchBytes + documentBytes > sizer.getMaxBatchBytes()) {
+          if (!flush(unit, batch, batchBytes, index)) {
+            return false;
+          }
+          batchBytes = 0;
+        }
+        batchBytes += documentBytes;
+      }
+      batch.add(document);
 
-      if (batch.size() == 1000 || i == documentsToLoad - 1) {
-        boolean inserted = false;
-        while (!inserted && retries < MAX_RETRIES) {
-          try {
-            long startTime = System.nanoTime();
-            collection.insertMany(batch);
-            long endTime = System.nanoTime();
-            double latencyMs = (endTime - startTime) / 1_000_000.0;
+      int limit = sizer != null ? sizer.getBatchSize() : batchSize;
+      if (batch.size() >= limit || index == end - 1) {
+        if (!flush(unit, batch, batchBytes, index + 1)) {
+          return false;
+        }
+        batchBytes = 0;
+      }
+    }
+    return true;
+  }
 
-            // Record metrics
-            metricsManager.recordWriteLatency(latencyMs);
-            metricsManager.addTotalOperations(batch.size());
-            metricsManager.addWriteOperations(batch.size());
-            inserted = true;
-            retries = 0;
-          } catch (MongoException e) {
-            logger.error("Thread {}: Error inserting batch: {}", threadId, e.getMessage());
-            metricsManager.incrementFailedOperations();
-            retries++;
-            if (retries < MAX_RETRIES) {
-              logger.warn(
-                  "Thread {}: Retrying in {} ms (Attempt {} of {})",
-                  threadId,
-                  RETRY_DELAY_MS,
-                  retries,
-                  MAX_RETRIES);
-              try {
-                Thread.sleep(RETRY_DELAY_MS);
-              } catch (InterruptedException ie) {
-                Thread.currentThread().interrupt();
-                logger.error("Thread {}: Interrupted during retry delay", threadId);
-                return;
-              }
-            } else {
-              logger.error("Thread {}: Max retries reached. Skipping batch.", threadId);
-            }
-          }
+  /**
+   * Inserts {@code batch}, the documents of {@code unit} up to index {@code end}, records it in the
+   * checkpoint and clears it. Returns false if interrupted.
+   */
+  private boolean flush(int unit, List<T> batch, long batchBytes, long end) {
+    BitSet skipped = insertWithRetry(batch, batchBytes);
+    if (skipped == null || Thread.currentThread().isInterrupted()) {
+      return false;
+    }
+    long from = end - batch.size();
+    if (!skipped.isEmpty()) {
+      logger.error(
+          "Thread {}: Skipped {} documents of [{}, {})",
+          threadId,
+          skipped.cardinality(),
+          from,
+          end);
+    }
+    if (checkpoint != null) {
+      checkpoint.recordBatch(unit, from, end, skipped);
+    }
+    batch.clear();
+    return true;
+  }
+
+  /**
+   * Inserts {@code batch} unordered, retrying after errors until MAX_RETRIES attempts have failed.
+   * After a partial failure only the documents the server reported as failed are retried, since it
+   * inserted all the others; those that failed on a duplicate key were inserted by an earlier
+   * attempt and are not retried either. Returns the positions in {@code batch} of the documents
+   * that were skipped, or null if the thread was interrupted.
+   */
+  private BitSet insertWithRetry(List<T> batch, long batchBytes) {
+    // Positions in batch of the documents still to insert, or null for all of them
+    int[] pending = null;
+    for (int attempt = 1; attempt <= MAX_RETRIES; attempt++) {
+      List<T> documents = pending == null ? batch : select(batch, pending);
+      long startTime = System.nanoTime();
+      try {
+        collection.insertMany(documents, UNORDERED);
+        long endTime = System.nanoTime();
+
+        // Record metrics
+        recordInserted(endTime - startTime, documents.size());
+        if (sizer != null && pending == null) {
+          sizer.recordBatch(batch.size(), batchBytes, endTime - startTime);
         }
-        batch.clear();
+        return new BitSet();
+      } catch (MongoBulkWriteException e) {
+        int[] failed = failedPositions(e, pending);
+        recordInserted(System.nanoTime() - startTime, documents.size() - failed.length);
+        logger.error(
+            "Thread {}: {} of {} documents failed: {}",
+            threadId,
+            failed.length,
+            documents.size(),
+            e.getMessage());
+        metricsManager.incrementFailedOperations();
+        if (sizer != null) {
+          sizer.recordFailure();
+        }
+        if (failed.length == 0) {
+          return new BitSet();
+        }
+        pending = failed;
+      } catch (MongoException e) {
+        logger.error("Thread {}: Error inserting batch: {}", threadId, e.getMessage());
+        metricsManager.incrementFailedOperations();
+        if (sizer != null) {
+          sizer.recordFailure();
+        }
+      }
+      if (attempt < MAX_RETRIES) {
+        logger.warn(
+            "Thread {}: Retrying {} documents in {} ms (Attempt {} of {})",
+            threadId,
+            pending == null ? batch.size() : pending.length,
+            RETRY_DELAY_MS,
+            attempt,
+            MAX_RETRIES);
+        try {
+          Thread.sleep(RETRY_DELAY_MS);
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          logger.error("Thread {}: Interrupted during retry delay", threadId);
+          return null;
+        }
+      }
+    }
+    logger.error("Thread {}: Max retries reached. Skipping documents.", threadId);
+    BitSet skipped = new BitSet(batch.size());
+    if (pending == null) {
+      skipped.set(0, batch.size());
+    } else {
+      for (int position : pending) {
+        skipped.set(position);
+      }
+    }
+    return skipped;
+  }
+
+  private void recordInserted(long latencyNanos, int documents) {
+    metricsManager.recordLatency(OperationType.UPDATE, latencyNanos);
+    metricsManager.addTotalOperations(documents);
+    metricsManager.addWriteOperations(documents);
+  }
+
+  // Positions in the batch of the documents a partial failure left out, less duplicate keys
+  private static int[] failedPositions(MongoBulkWriteException e, int[] pending) {
+    int[] failed = new int[e.getWriteErrors().size()];
+    int count = 0;
+    for (BulkWriteError error : e.getWriteErrors()) {
+      if (error.getCategory() != ErrorCategory.DUPLICATE_KEY) {
+        failed[count++] = pending == null ? error.getIndex() : pending[error.getIndex()];
       }
     }
+    return Arrays.copyOf(failed, count);
+  }
+
+  private static <T> List<T> select(List<T> batch, int[] positions) {
+    List<T> documents = new ArrayList<>(positions.length);
+    for (int position : positions) {
+      documents.add(batch.get(position));
+    }
+    return documents;
   }
 }
@@ -0,0 +1,10 @@
+package com.example;
+
+/**
+ * Produces the document stored under a given {@code index}. Implementations may reuse internal
+ * buffers, so each thread gets its own instance.
+ */
+@FunctionalInterface
+public interface DocumentFactory<T> {
+  T generate(long index);
+}
@@ -1,12 +1,8 @@
 package com.example;
 
-import java.time.Instant;
 import java.util.List;
-import java.util.Locale;
-import java.util.UUID;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
-import net.datafaker.Faker;
 import org.bson.BsonBinaryWriter;
 import org.bson.Document;
 import org.bson.codecs.BsonDocumentCodec;
@@ -14,27 +10,25 @@ import org.bson.codecs.EncoderContext;
 import org.bson.io.BasicOutputBuffer;
 
 public class DocumentGenerator {
-  private static final Faker FAKER = new Faker(new Locale("en-US"));
-
-  public static Document generateRichDocument(int index, int targetSize) {
+  public static Document generateRichDocument(ValueSource values, long index, int targetSize) {
     Document doc =
         new Document()
             .append("index", index)
-            .append("timestamp", Instant.now().toEpochMilli())
-            .append("user", generateUser())
-            .append("order", generateOrder())
-            .append("product", generateProduct())
-            .append("shipping", generateShipping())
-            .append("payment", generatePayment())
-            .append("metadata", generateMetadata())
-            .append("tags", generateTags())
-            .append("comments", generateComments());
+            .append("timestamp", values.now().toEpochMilli())
+            .append("user", generateUser(values))
+            .append("order", generateOrder(values))
+            .append("product", generateProduct(values))
+            .append("shipping", generateShipping(values))
+            .append("payment", generatePayment(values))
+            .append("metadata", generateMetadata(values))
+            .append("tags", generateTags(values))
+            .append("comments", generateComments(values));
 
     // Calculate document size
     int currentSize = calculateSize(doc);
     if (currentSize < targetSize) {
       int paddingSize = targetSize - currentSize - 10; // 10 bytes buffer
-      doc.append("padding", FAKER.lorem().characters(Math.max(0, paddingSize)));
+      doc.append("padding", values.padding(Math.max(0, paddingSize)));
     }
 
     return doc;
@@ -49,52 +43,51 @@ public class DocumentGenerator {
     return buffer.getSize();
   }
 
-  private static Document generateUser() {
-    return new Document("firstName", FAKER.name().firstName())
-        .append("lastName", FAKER.name().lastName())
-        .append("email", FAKER.internet().emailAddress())
-        .append("phone", FAKER.phoneNumber().phoneNumber())
-        .append("address", generateAddress())
-        .append("dateOfBirth", FAKER.date().birthday().toInstant().toEpochMilli())
+  private static Document generateUser(ValueSource values) {
+    return new Document("firstName", values.firstName())
+        .append("lastName", values.lastName())
+        .append("email", values.email())
+        .append("phone", values.phoneNumber())
+        .append("address", generateAddress(values))
+        .append("dateOfBirth", values.birthday())
         .append(
             "registrationDate",
-            Instant.now().minusSeconds(FAKER.number().numberBetween(0L, 31536000L)).toEpochMilli())
+            values.now().minusSeconds(values.longBetween(0L, 31536000L)).toEpochMilli())
         .append(
             "lastLoginDate",
-            Instant.now().minusSeconds(FAKER.number().numberBetween(0L, 2592000L)).toEpochMilli())
-        .append("preferences", generatePreferences());
+            values.now().minusSeconds(values.longBetween(0L, 2592000L)).toEpochMilli())
+        .append("preferences", generatePreferences(values));
   }
 
-  private static Document generateAddress() {
-    return new Document("street", FAKER.address().streetAddress())
-        .append("city", FAKER.address().city())
-        .append("state", FAKER.address().state())
-        .append("country", FAKER.address().country())
-        .append("zipCode", FAKER.address().zipCode())
+  private static Document generateAddress(ValueSource values) {
+    return new Document("street", values.streetAddress())
+        .append("city", values.city())
+        .append("state", values.state())
+        .append("country", values.country())
+        .append("zipCode", values.zipCode())
         .append(
             "coordinates",
-            new Document("lat", FAKER.address().latitude())
-                .append("lng", FAKER.address().longitude()));
+            new Document("lat", values.latitude()).append("lng", values.longitude()));
   }
 
-  private static Document generatePreferences() {
-    return new Document("language", FAKER.nation().language())
-        .append("currency", FAKER.currency().code())
-        .append("timezone", FAKER.address().timeZone())
-        .append("marketingEmails", FAKER.bool().bool())
-        .append("twoFactorAuth", FAKER.bool().bool());
+  private static Document generatePreferences(ValueSource values) {
+    return new Document("language", values.language())
+        .append("currency", values.currencyCode())
+        .append("timezone", values.timeZone())
+        .append("marketingEmails", values.nextBoolean())
+        .append("twoFactorAuth", values.nextBoolean());
   }
 
-  private static Document generateOrder() {
+  private static Document generateOrder(ValueSource values) {
     List<Document> items =
-        IntStream.range(0, FAKER.number().numberBetween(1, 6))
+        IntStream.range(0, values.intBetween(1, 6))
             .mapToObj(
                 i ->
-                    new Document("productId", UUID.randomUUID().toString())
-                        .append("name", FAKER.commerce().productName())
-                        .append("quantity", FAKER.number().numberBetween(1, 10))
-                        .append("price", FAKER.number().randomDouble(2, 1, 1000))
-                        .append("discount", FAKER.number().randomDouble(2, 0, 1)))
+                    new Document("productId", values.uuid())
+                        .append("name", values.productName())
+                        .append("quantity", values.intBetween(1, 10))
+                        .append("price", values.randomDouble(2, 1, 1000))
+                        .append("discount", values.randomDouble(2, 0, 1)))
             .collect(Collectors.toList());
 
     double subtotal =
@@ -112,94 +105,87 @@ public class DocumentGenerator {
     double tax = (subtotal - discount) * 0.1; // Assuming 10% tax
     double total = subtotal - discount + tax;
 
-    return new Document("orderId", UUID.randomUUID().toString())
+    return new Document("orderId", values.uuid())
         .append(
-            "orderDate",
-            Instant.now().minusSeconds(FAKER.number().numberBetween(0L, 2592000L)).toEpochMilli())
+            "orderDate", values.now().minusSeconds(values.longBetween(0L, 2592000L)).toEpochMilli())
         .append("items", items)
         .append("subtotal", subtotal)
         .append("discount", discount)
         .append("tax", tax)
         .append("total", total)
         .append(
-            "status",
-            FAKER.options().option("pending", "processing", "shipped", "delivered", "cancelled"));
+            "status", values.option("pending", "processing", "shipped", "delivered", "cancelled"));
   }
 
-  private static Document generateProduct() {
-    return new Document("productId", UUID.randomUUID().toString())
-        .append("name", FAKER.commerce().productName())
-        .append("description", FAKER.lorem().paragraph())
-        .append("category", FAKER.commerce().department())
-        .append("subcategory", FAKER.commerce().material())
-        .append("price", FAKER.number().randomDouble(2, 1, 1000))
-        .append("currency", FAKER.currency().code())
-        .append("inStock", FAKER.number().numberBetween(0, 1000))
+  private static Document generateProduct(ValueSource values) {
+    return new Document("productId", values.uuid())
+        .append("name", values.productName())
+        .append("description", values.paragraph())
+        .append("category", values.department())
+        .append("subcategory", values.material())
+        .append("price", values.randomDouble(2, 1, 1000))
+        .append("currency", values.currencyCode())
+        .append("inStock", values.intBetween(0, 1000))
         .append(
             "attributes",
-            new Document("color", FAKER.color().name())
-                .append("size", FAKER.options().option("XS", "S", "M", "L", "XL", "XXL"))
-                .append("weight", FAKER.number().randomDouble(2, 1, 100))
+            new Document("color", values.colorName())
+                .append("size", values.option("XS", "S", "M", "L", "XL", "XXL"))
+                .append("weight", values.randomDouble(2, 1, 100))
                 .append(
                     "dimensions",
-                    new Document("length", FAKER.number().randomDouble(2, 1, 100))
-                        .append("width", FAKER.number().randomDouble(2, 1, 100))
-                        .append("height", FAKER.number().randomDouble(2, 1, 100))));
+                    new Document("length", values.randomDouble(2, 1, 100))
+                        .append("width", values.randomDouble(2, 1, 100))
+                        .append("height", values.randomDouble(2, 1, 100))));
   }
 
-  private static Document generateShipping() {
-    return new Document(
-            "method", FAKER.options().option("Standard", "Express", "Next Day", "International"))
-        .append("carrier", FAKER.options().option("UPS", "FedEx", "DHL", "USPS"))
-        .append("trackingNumber", FAKER.expression("#{numerify '############'}"))
+  private static Document generateShipping(ValueSource values) {
+    return new Document("method", values.option("Standard", "Express", "Next Day", "International"))
+        .append("carrier", values.option("UPS", "FedEx", "DHL", "USPS"))
+        .append("trackingNumber", values.digits(12))
         .append(
             "estimatedDelivery",
-            Instant.now()
-                .plusSeconds(FAKER.number().numberBetween(86400L, 1209600L))
+            values
+                .now()
+                .plusSeconds(values.longBetween(86400L, 1209600L))
                 .toEpochMilli()) // 1-14 days
-        .append("shippingAddress", generateAddress());
+        .append("shippingAddress", generateAddress(values));
   }
 
-  private static Document generatePayment() {
+  private static Document generatePayment(ValueSource values) {
     return new Document(
-            "method",
-            FAKER.options().option("Credit Card", "PayPal", "Bank Transfer", "Cash on Delivery"))
-        .append("transactionId", UUID.randomUUID().toString())
-        .append("amount", FAKER.number().randomDouble(2, 10, 1000))
-        .append("currency", FAKER.currency().code())
-        .append("status", FAKER.options().option("pending", "completed", "failed", "refunded"))
-        .append(
-            "cardType",
-            FAKER.options().option("Visa", "MasterCard", "American Express", "Discover"))
-        .append("last4", FAKER.expression("#{numerify '####'}"));
+            "method", values.option("Credit Card", "PayPal", "Bank Transfer", "Cash on Delivery"))
+        .append("transactionId", values.uuid())
+        .append("amount", values.randomDouble(2, 10, 1000))
+        .append("currency", values.currencyCode())
+        .append("status", values.option("pending", "completed", "failed", "refunded"))
+        .append("cardType", values.option("Visa", "MasterCard", "American Express", "Discover"))
+        .append("last4", values.digits(4));
   }
 
-  private static Document generateMetadata() {
-    return new Document("userAgent", FAKER.internet().userAgent())
-        .append("ipAddress", FAKER.internet().ipV4Address())
-        .append("referrer", FAKER.internet().url())
-        .append("sessionId", UUID.randomUUID().toString());
+  private static Document generateMetadata(ValueSource values) {
+    return new Document("userAgent", values.userAgent())
+        .append("ipAddress", values.ipV4Address())
+        .append("referrer", values.url())
+        .append("sessionId", values.uuid());
   }
 
-  private static List<String> generateTags() {
-    return IntStream.range(0, FAKER.number().numberBetween(1, 6))
-        .mapToObj(i -> FAKER.lorem().word())
+  private static List<String> generateTags(ValueSource values) {
+    return IntStream.range(0, values.intBetween(1, 6))
+        .mapToObj(i -> values.word())
         .collect(Collectors.toList());
   }
 
-  private static List<Document> generateComments() {
-    return IntStream.range(0, FAKER.number().numberBetween(0, 5))
+  private static List<Document> generateComments(ValueSource values) {
+    return IntStream.range(0, values.intBetween(0, 5))
         .mapToObj(
             i ->
-                new Document("userId", UUID.randomUUID().toString())
-                    .append("username", FAKER.internet().username())
-                    .append("comment", FAKER.lorem().sentence())
-                    .append("rating", FAKER.number().numberBetween(1, 6))
+                new Document("userId", values.uuid())
+                    .append("username", values.username())
+                    .append("comment", values.sentence())
+                    .append("rating", values.intBetween(1, 6))
                     .append(
                         "timestamp",
-                        Instant.now()
-                            .minusSeconds(FAKER.number().numberBetween(0L, 2592000L))
-                            .toEpochMilli()))
+                        values.now().minusSeconds(values.longBetween(0L, 2592000L)).toEpochMilli()))
         .collect(Collectors.toList());
   }
 }
@@ -0,0 +1,370 @@
+package com.example;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ClusterDescription;
+import com.mongodb.connection.ServerDescription;
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures what each primary change or loss of writability cost the workload. The cluster listener
+ * reports topology changes; operation latencies, failures and retries are sampled into short time
+ * buckets, so every event can be lined up with what the operations saw around it. An event's
+ * latency baseline is the median bucket p99 over the seconds before it, and its spike lasts until
+ * bucket p99 stays within {@link #SPIKE_FACTOR} of that baseline. Failures are counted from shortly
+ * before the event, since the driver usually learns of a step-down from failed commands.
+ */
+public class FailoverAnalyzer implements Closeable, MetricsReporter {
+  private static final Logger logger = LoggerFactory.getLogger(FailoverAnalyzer.class);
+  private static final FailoverAnalyzer INSTANCE = new FailoverAnalyzer();
+  private static final Set<String> WRITE_COMMANDS =
+      Set.of("insert", "update", "delete", "findAndModify");
+  private static final double SPIKE_FACTOR = 1.5;
+  private static final long LEAD_IN_NANOS = TimeUnit.SECONDS.toNanos(1);
+  // How long p99 must stay near the baseline for the spike to be over
+  private static final long RECOVERY_NANOS = TimeUnit.SECONDS.toNanos(1);
+  // Events still unresolved after this are closed with whatever was observed
+  private static final long MAX_EVENT_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+  private final LatencyHistogram latency = new LatencyHistogram();
+  private final LongAdder failedOperations = new LongAdder();
+  private final LongAdder failedCommands = new LongAdder();
+  private final LongAdder retriedOperations = new LongAdder();
+  // Failed operations, failed commands and retried operations up to the last bucket
+  private final long[] sampled = new long[3];
+  private volatile boolean enabled;
+  private volatile long lastWriteNanos;
+  // Set while an event waits for its first write on this server
+  private volatile ServerAddress awaitedPrimary;
+  private ScheduledExecutorService sampler;
+  private long resolutionNanos;
+  private int baselineBuckets;
+  // Most recent buckets, enough for a baseline and the lead-in
+  private final Deque<Bucket> recent = new ArrayDeque<>();
+  private final List<Event> events = new ArrayList<>();
+  private Event open;
+
+  private FailoverAnalyzer() {}
+
+  public static FailoverAnalyzer getInstance() {
+    return INSTANCE;
+  }
+
+  /** Starts sampling every {@code resolutionMillis}, with a baseline of {@code baselineSeconds}. */
+  public synchronized void start(long resolutionMillis, long baselineSeconds) {
+    resolutionNanos = TimeUnit.MILLISECONDS.toNanos(resolutionMillis);
+    baselineBuckets =
+        (int) Math.max(1, TimeUnit.SECONDS.toNanos(baselineSeconds) / resolutionNanos);
+    sampler =
+        new ScheduledThreadPoolExecutor(
+            1,
+            runnable -> {
+              Thread thread = new Thread(runnable, "failover-analyzer");
+              thread.setDaemon(true);
+              return thread;
+            });
+    sampler.scheduleAtFixedRate(
+        this::sample, resolutionMillis, resolutionMillis, TimeUnit.MILLISECONDS);
+    enabled = true;
+  }
+
+  @Override
+  public synchronized void close() {
+    if (sampler != null) {
+      sampler.shutdownNow();
+    }
+  }
+
+  public void recordLatency(long latencyNanos) {
+    if (enabled) {
+      latency.recordNanos(latencyNanos);
+    }
+  }
+
+  public void addFailedOperations(int count) {
+    if (enabled) {
+      failedOperations.add(count);
+    }
+  }
+
+  /** An operation that succeeded after at least one of its commands failed. */
+  public void operationRetried() {
+    if (enabled) {
+      retriedOperations.increment();
+    }
+  }
+
+  public void commandFailed() {
+    if (enabled) {
+      failedCommands.increment();
+    }
+  }
+
+  public void commandSucceeded(String command, ServerAddress server) {
+    if (!enabled || !WRITE_COMMANDS.contains(command)) {
+      return;
+    }
+    long now = System.nanoTime();
+    lastWriteNanos = now;
+    if (server.equals(awaitedPrimary)) {
+      firstWrite(server, now);
+    }
+  }
+
+  private synchronized void firstWrite(ServerAddress server, long now) {
+    if (open != null && open.firstWriteNanos == 0 && server.equals(open.newPrimary)) {
+      open.firstWriteNanos = now;
+      awaitedPrimary = null;
+      logger.info(
+          "First write on {} {} ms after the topology change",
+          server,
+          TimeUnit.NANOSECONDS.toMillis(now - open.startNanos));
+    }
+  }
+
+  public synchronized void clusterChanged(ClusterDescription previous, ClusterDescription next) {
+    if (!enabled) {
+      return;
+    }
+    ServerAddress previousPrimary = writableServer(previous);
+    ServerAddress nextPrimary = writableServer(next);
+    boolean writable = next.hasWritableServer();
+    if (Objects.equals(previousPrimary, nextPrimary) && previous.hasWritableServer() == writable) {
+      return;
+    }
+    long now = System.nanoTime();
+    if (open == null) {
+      // The first discovery of the primary is not a failover
+      boolean primaryLost = previousPrimary != null && !previousPrimary.equals(nextPrimary);
+      if (!primaryLost && !(previous.hasWritableServer() && !writable)) {
+        return;
+      }
+      open = new Event(now, previousPrimary);
+      open.lastWriteNanos = lastWriteNanos;
+      open.baselineP99 = baselineP99();
+      countLeadIn(open);
+      events.add(open);
+    }
+    logger.info(
+        "Topology change: primary {} -> {}, writable {}",
+        previousPrimary != null ? previousPrimary : "none",
+        nextPrimary != null ? nextPrimary : "none",
+        writable);
+    if (!writable && open.unwritableNanos == 0) {
+      open.unwritableNanos = now;
+    } else if (writable && open.unwritableNanos != 0 && open.writableNanos == 0) {
+      open.writableNanos = now;
+    }
+    if (nextPrimary != null && open.firstWriteNanos == 0) {
+      open.newPrimary = nextPrimary;
+      awaitedPrimary = nextPrimary;
+    }
+  }
+
+  // The primary, or a standalone server; sharded clusters have none
+  private static ServerAddress writableServer(ClusterDescription description) {
+    for (ServerDescription server : description.getServerDescriptions()) {
+      if (server.isPrimary() || server.isStandAlone()) {
+        return server.getAddress();
+      }
+    }
+    return null;
+  }
+
+  private synchronized void sample() {
+    long now = System.nanoTime();
+    Histogram interval = latency.sampleInterval();
+    Bucket bucket =
+        new Bucket(
+            now,
+            interval.getTotalCount(),
+            interval.getValueAtPercentile(99),
+            failedOperations.sum() - sampled[0],
+            failedCommands.sum() - sampled[1],
+            retriedOperations.sum() - sampled[2]);
+    sampled[0] += bucket.failedOperations;
+    sampled[1] += bucket.failedCommands;
+    sampled[2] += bucket.retriedOperations;
+    recent.addLast(bucket);
+    long leadInBuckets = LEAD_IN_NANOS / resolutionNanos + 1;
+    while (recent.size() > baselineBuckets + leadInBuckets) {
+      recent.removeFirst();
+    }
+    if (open != null) {
+      open.add(bucket);
+      if (open.isResolved() || now - open.startNanos >= MAX_EVENT_NANOS) {
+        open = null;
+        awaitedPrimary = null;
+      }
+    }
+  }
+
+  // Median of the bucket p99s before the lead-in, ignoring buckets without operations
+  private long baselineP99() {
+    long leadInStart = System.nanoTime() - LEAD_IN_NANOS;
+    long[] p99s = new long[recent.size()];
+    int count = 0;
+    for (Bucket bucket : recent) {
+      if (bucket.endNanos <= leadInStart && bucket.operations > 0) {
+        p99s[count++] = bucket.p99;
+      }
+    }
+    if (count == 0) {
+      return 0;
+    }
+    Arrays.sort(p99s, 0, count);
+    return p99s[count / 2];
+  }
+
+  private void countLeadIn(Event event) {
+    for (Bucket bucket : recent) {
+      if (bucket.endNanos > event.startNanos - LEAD_IN_NANOS) {
+        event.failedOperations += bucket.failedOperations;
+        event.failedCommands += bucket.failedCommands;
+        event.retriedOperations += bucket.retriedOperations;
+      }
+    }
+  }
+
+  @Override
+  public synchronized String intervalReport(double intervalSeconds) {
+    if (open == null) {
+      return null;
+    }
+    return String.format(
+        "[FAILOVER: Primary=%s, Writable=%s, Elapsed(ms)=%d, FailedOps=%d, RetriedOps=%d]",
+        open.newPrimary != null ? open.newPrimary : "none",
+        open.unwritableNanos == 0 || open.writableNanos != 0,
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - open.startNanos),
+        open.failedOperations,
+        open.retriedOperations);
+  }
+
+  @Override
+  public synchronized void printFinalReport() {
+    System.out.println("[FAILOVER], Events, " + events.size());
+    long now = System.nanoTime();
+    for (int i = 0; i < events.size(); i++) {
+      Event event = events.get(i);
+      String label = "[FAILOVER-" + (i + 1) + "], ";
+      System.out.printf("%sStartTime, %tT.%<tL%n", label, event.startMillis);
+      System.out.println(label + "OldPrimary, " + orNone(event.oldPrimary));
+      System.out.println(label + "NewPrimary, " + orNone(event.newPrimary));
+      long unwritable = 0;
+      if (event.unwritableNanos != 0) {
+        unwritable = (event.writableNanos != 0 ? event.writableNanos : now) - event.unwritableNanos;
+      }
+      System.out.println(label + "WriteUnavailable(ms), " + millis(unwritable));
+      System.out.println(label + "TimeToFirstWrite(ms), " + since(event.startNanos, event));
+      System.out.println(
+          label
+              + "WriteGap(ms), "
+              + (event.lastWriteNanos != 0 ? since(event.lastWriteNanos, event) : -1));
+      System.out.println(label + "FailedOperations, " + event.failedOperations);
+      System.out.println(label + "FailedCommands, " + event.failedCommands);
+      System.out.println(label + "RetriedOperations, " + event.retriedOperations);
+      System.out.println(label + "BaselineP99(us), " + event.baselineP99);
+      System.out.println(label + "PeakP99(us), " + event.peakP99);
+      System.out.println(
+          label
+              + "LatencySpike(ms), "
+              + (event.recoveredNanos != 0 ? millis(event.recoveredNanos - event.startNanos) : -1));
+    }
+  }
+
+  // Milliseconds from {@code from} to the event's first write on the new primary, or -1
+  private static long since(long from, Event event) {
+    return event.firstWriteNanos != 0 ? millis(event.firstWriteNanos - from) : -1;
+  }
+
+  private static long millis(long nanos) {
+    return TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+
+  private static String orNone(ServerAddress server) {
+    return server != null ? server.toString() : "none";
+  }
+
+  private static final class Bucket {
+    private final long endNanos;
+    private final long operations;
+    private final long p99;
+    private final long failedOperations;
+    private final long failedCommands;
+    private final long retriedOperations;
+
+    private Bucket(
+        long endNanos,
+        long operations,
+        long p99,
+        long failedOperations,
+        long failedCommands,
+        long retriedOperations) {
+      this.endNanos = endNanos;
+      this.operations = operations;
+      this.p99 = p99;
+      this.failedOperations = failedOperations;
+      this.failedCommands = failedCommands;
+      this.retriedOperations = retriedOperations;
+    }
+  }
+
+  private static final class Event {
+    private final long startNanos;
+    private final long startMillis = System.currentTimeMillis();
+    private final ServerAddress oldPrimary;
+    private ServerAddress newPrimary;
+    private long lastWriteNanos;
+    private long unwritableNanos;
+    private long writableNanos;
+    private long firstWriteNanos;
+    private long baselineP99;
+    private long peakP99;
+    // Start of the current run of buckets near the baseline, and when the spike ended
+    private long nearBaselineSince;
+    private long recoveredNanos;
+    private long failedOperations;
+    private long failedCommands;
+    private long retriedOperations;
+
+    private Event(long startNanos, ServerAddress oldPrimary) {
+      this.startNanos = startNanos;
+      this.oldPrimary = oldPrimary;
+    }
+
+    private void add(Bucket bucket) {
+      failedOperations += bucket.failedOperations;
+      failedCommands += bucket.failedCommands;
+      retriedOperations += bucket.retriedOperations;
+      if (bucket.operations == 0 || recoveredNanos != 0) {
+        return;
+      }
+      peakP99 = Math.max(peakP99, bucket.p99);
+      if (bucket.p99 > baselineP99 * SPIKE_FACTOR) {
+        nearBaselineSince = 0;
+      } else if (nearBaselineSince == 0) {
+        nearBaselineSince = bucket.endNanos;
+      } else if (bucket.endNanos - nearBaselineSince >= RECOVERY_NANOS) {
+        recoveredNanos = nearBaselineSince;
+      }
+    }
+
+    private boolean isResolved() {
+      boolean writable = unwritableNanos == 0 || writableNanos != 0;
+      return writable && firstWriteNanos != 0 && recoveredNanos != 0;
+    }
+  }
+}
@@ -0,0 +1,199 @@
+package com.example;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Random;
+import net.datafaker.Faker;
+
+/** Generates every value on demand with DataFaker. */
+public class FakerValueSource implements ValueSource {
+  private final Random random;
+  private final Faker faker;
+  private final Clock clock;
+
+  /**
+   * @param random drives every value; Faker keeps no other random state, so reseeding it replays
+   *     the same values
+   */
+  public FakerValueSource(Random random, Clock clock) {
+    this.random = random;
+    this.faker = new Faker(new Locale("en-US"), random);
+    this.clock = clock;
+  }
+
+  @Override
+  public void reseed(long seed) {
+    random.setSeed(seed);
+  }
+
+  @Override
+  public Instant now() {
+    return clock.instant();
+  }
+
+  @Override
+  public String firstName() {
+    return faker.name().firstName();
+  }
+
+  @Override
+  public String lastName() {
+    return faker.name().lastName();
+  }
+
+  @Override
+  public String email() {
+    return faker.internet().emailAddress();
+  }
+
+  @Override
+  public String phoneNumber() {
+    return faker.phoneNumber().phoneNumber();
+  }
+
+  @Override
+  public String streetAddress() {
+    return faker.address().streetAddress();
+  }
+
+  @Override
+  public String city() {
+    return faker.address().city();
+  }
+
+  @Override
+  public String state() {
+    return faker.address().state();
+  }
+
+  @Override
+  public String country() {
+    return faker.address().country();
+  }
+
+  @Override
+  public String zipCode() {
+    return faker.address().zipCode();
+  }
+
+  @Override
+  public String latitude() {
+    return faker.address().latitude();
+  }
+
+  @Override
+  public String longitude() {
+    return faker.address().longitude();
+  }
+
+  @Override
+  public String timeZone() {
+    return faker.address().timeZone();
+  }
+
+  @Override
+  public String language() {
+    return faker.nation().language();
+  }
+
+  @Override
+  public String currencyCode() {
+    return faker.currency().code();
+  }
+
+  @Override
+  public String productName() {
+    return faker.commerce().productName();
+  }
+
+  @Override
+  public String paragraph() {
+    return faker.lorem().paragraph();
+  }
+
+  @Override
+  public String department() {
+    return faker.commerce().department();
+  }
+
+  @Override
+  public String material() {
+    return faker.commerce().material();
+  }
+
+  @Override
+  public String colorName() {
+    return faker.color().name();
+  }
+
+  @Override
+  public String userAgent() {
+    return faker.internet().userAgent();
+  }
+
+  @Override
+  public String ipV4Address() {
+    return faker.internet().ipV4Address();
+  }
+
+  @Override
+  public String url() {
+    return faker.internet().url();
+  }
+
+  @Override
+  public String word() {
+    return faker.lorem().word();
+  }
+
+  @Override
+  public String username() {
+    return faker.internet().username();
+  }
+
+  @Override
+  public String sentence() {
+    return faker.lorem().sentence();
+  }
+
+  @Override
+  public String uuid() {
+    return ValueSource.randomUuid(random.nextLong(), random.nextLong());
+  }
+
+  @Override
+  public String digits(int count) {
+    return faker.number().digits(count);
+  }
+
+  @Override
+  public String padding(int length) {
+    return faker.lorem().characters(length);
+  }
+
+  @Override
+  public boolean nextBoolean() {
+    return faker.bool().bool();
+  }
+
+  @Override
+  public int intBetween(int min, int max) {
+    return faker.number().numberBetween(min, max);
+  }
+
+  @Override
+  public long longBetween(long min, long max) {
+    return faker.number().numberBetween(min, max);
+  }
+
+  @Override
+  public double randomDouble(int decimals, int min, int max) {
+    return faker.number().randomDouble(decimals, min, max);
+  }
+
+  @Override
+  public String option(String... options) {
+    return faker.options().option(options);
+  }
+}
@@ -0,0 +1,356 @@
+package com.example;
+
+import com.mongodb.MongoException;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.invoke.VarHandle;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the most recent driver events from the listeners in a preallocated ring of primitive
+ * columns, for a post-mortem of what the driver did just before something went wrong. Recording
+ * claims a slot with one atomic increment and writes into arrays, without locks or allocation:
+ * command names and server addresses are replaced by ids from a symbol table that only grows when a
+ * new one is first seen. Each slot carries the sequence number of its record, set after the record
+ * is written, so a dump skips slots that are being overwritten. The ring is written to a file on
+ * {@link #dump}, when a {@value #TRIGGER_FILE} file appears in the dump directory, or when an
+ * operation takes longer than the configured threshold. A trigger file rather than a signal works
+ * on every platform and needs no internal JDK API.
+ */
+public class FlightRecorder implements MetricsReporter {
+  private static final Logger logger = LoggerFactory.getLogger(FlightRecorder.class);
+  private static final FlightRecorder INSTANCE = new FlightRecorder();
+  private static final Kind[] KINDS = Kind.values();
+  // Created by the user to ask for a dump; removed when the dump is taken
+  static final String TRIGGER_FILE = "flight-recorder.dump";
+  private static final long TRIGGER_POLL_MILLIS = 1000;
+  // Automatic dumps of one slow spell are written once
+  private static final long MIN_DUMP_GAP_NANOS = TimeUnit.SECONDS.toNanos(10);
+  private static final byte[] BINARY_MAGIC = {'F', 'L', 'T', 'R', 'E', 'C', '0', '1'};
+
+  /**
+   * Recorded events. {@code id} is the request id of command events and the connection id of pool
+   * and heartbeat events; {@code code} is the connection id of a command start, the error code of a
+   * failure, the reason of a checkout failure, 1 for an awaited heartbeat or the new server type.
+   */
+  public enum Kind {
+    COMMAND_STARTED,
+    COMMAND_SUCCEEDED,
+    COMMAND_FAILED,
+    CHECKOUT_STARTED,
+    CHECKED_OUT,
+    CHECKOUT_FAILED,
+    CHECKED_IN,
+    CONNECTION_CREATED,
+    CONNECTION_CLOSED,
+    HEARTBEAT_STARTED,
+    HEARTBEAT_SUCCEEDED,
+    HEARTBEAT_FAILED,
+    SERVER_CHANGED,
+    CLUSTER_CHANGED
+  }
+
+  private volatile boolean enabled;
+  private int mask;
+  private AtomicLongArray sequences;
+  private long[] times;
+  private byte[] kinds;
+  private int[] ids;
+  private int[] names;
+  private int[] servers;
+  private long[] durations;
+  private int[] codes;
+  private final AtomicLong next = new AtomicLong();
+  private final Map<Object, Integer> symbolIds = new ConcurrentHashMap<>();
+  private final List<String> symbols = new CopyOnWriteArrayList<>();
+  private Path directory;
+  private boolean binary;
+  private long latencyThresholdNanos;
+  private final AtomicLong lastAutomaticDump = new AtomicLong();
+  private final LongAdder dumps = new LongAdder();
+  // Wall clock at nanoTime zero, to date the records in a dump
+  private final long epochOffsetNanos =
+      TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis()) - System.nanoTime();
+
+  private FlightRecorder() {}
+
+  public static FlightRecorder getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Allocates a ring of at least {@code capacity} records and starts recording. Dumps go to {@code
+   * directory}, in binary if {@code binary} and as JSON lines otherwise; {@code latencyThresholdMs}
+   * above zero dumps automatically after an operation that slow.
+   */
+  public synchronized void start(
+      int capacity, String directory, boolean binary, long latencyThresholdMs) {
+    int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+    mask = size - 1;
+    sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      sequences.set(i, -1);
+    }
+    times = new long[size];
+    kinds = new byte[size];
+    ids = new int[size];
+    names = new int[size];
+    servers = new int[size];
+    durations = new long[size];
+    codes = new int[size];
+    this.directory = Path.of(directory);
+    this.binary = binary;
+    this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMs);
+    enabled = true;
+    Thread watcher = new Thread(this::watchTrigger, "flight-recorder-trigger");
+    watcher.setDaemon(true);
+    watcher.start();
+    logger.info(
+        "Flight recorder keeping the last {} driver events; creating {} dumps them",
+        size,
+        this.directory.resolve(TRIGGER_FILE).toAbsolutePath());
+  }
+
+  // Dumps whenever the trigger file appears, checking once a second
+  private void watchTrigger() {
+    Path trigger = directory.resolve(TRIGGER_FILE);
+    while (!Thread.currentThread().isInterrupted()) {
+      try {
+        Thread.sleep(TRIGGER_POLL_MILLIS);
+        if (Files.deleteIfExists(trigger)) {
+          dump("requested");
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (IOException e) {
+        logger.warn("Cannot remove flight recorder trigger {}: {}", trigger, e.getMessage());
+        return;
+      }
+    }
+  }
+
+  /**
+   * Records one event. {@code name} and {@code server} are interned, so pass the driver's own
+   * objects; either may be null.
+   */
+  public void record(Kind kind, int id, Object name, Object server, long durationNanos, int code) {
+    if (!enabled) {
+      return;
+    }
+    long sequence = next.getAndIncrement();
+    int slot = (int) (sequence & mask);
+    sequences.set(slot, -1);
+    VarHandle.storeStoreFence();
+    times[slot] = System.nanoTime();
+    kinds[slot] = (byte) kind.ordinal();
+    ids[slot] = id;
+    names[slot] = symbol(name);
+    servers[slot] = symbol(server);
+    durations[slot] = durationNanos;
+    codes[slot] = code;
+    sequences.lazySet(slot, sequence);
+  }
+
+  /** The server error code of a failure, or -1. */
+  public static int errorCode(Throwable throwable) {
+    return throwable instanceof MongoException ? ((MongoException) throwable).getCode() : -1;
+  }
+
+  private int symbol(Object value) {
+    if (value == null) {
+      return -1;
+    }
+    Integer id = symbolIds.get(value);
+    return id != null ? id : addSymbol(value);
+  }
+
+  private synchronized int addSymbol(Object value) {
+    Integer id = symbolIds.get(value);
+    if (id == null) {
+      id = symbols.size();
+      symbols.add(value.toString());
+      symbolIds.put(value, id);
+    }
+    return id;
+  }
+
+  /** Dumps on a thread of its own when an operation was slower than the threshold. */
+  public void operationCompleted(long latencyNanos) {
+    if (!enabled || latencyThresholdNanos <= 0 || latencyNanos < latencyThresholdNanos) {
+      return;
+    }
+    long now = System.nanoTime();
+    long last = lastAutomaticDump.get();
+    if ((last == 0 || now - last >= MIN_DUMP_GAP_NANOS)
+        && lastAutomaticDump.compareAndSet(last, now)) {
+      dumpAsync("latency-" + TimeUnit.NANOSECONDS.toMillis(latencyNanos) + "ms");
+    }
+  }
+
+  private void dumpAsync(String reason) {
+    Thread thread = new Thread(() -> dump(reason), "flight-recorder-dump");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /** Writes the records in the ring, oldest first, and returns the file, or null on failure. */
+  public synchronized Path dump(String reason) {
+    if (!enabled) {
+      return null;
+    }
+    long end = next.get();
+    long start = Math.max(0, end - mask - 1);
+    Path file =
+        directory.resolve(
+            String.format(
+                "flight-%d-%s.%s", System.currentTimeMillis(), reason, binary ? "bin" : "jsonl"));
+    try {
+      Files.createDirectories(directory);
+      int written;
+      if (binary) {
+        try (DataOutputStream out =
+            new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+          written = writeBinary(out, start, end);
+        }
+      } else {
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+          written = writeJson(writer, start, end);
+        }
+      }
+      dumps.increment();
+      logger.info("Flight recorder: wrote {} events to {} ({})", written, file, reason);
+      return file;
+    } catch (IOException e) {
+      logger.error("Failed to write flight recorder dump {}: {}", file, e.getMessage());
+      return null;
+    }
+  }
+
+  private int writeJson(Writer writer, long start, long end) throws IOException {
+    int written = 0;
+    for (long sequence = start; sequence < end; sequence++) {
+      int slot = (int) (sequence & mask);
+      if (sequences.get(slot) != sequence) {
+        continue;
+      }
+      long time = times[slot];
+      int kind = kinds[slot];
+      int id = ids[slot];
+      int name = names[slot];
+      int server = servers[slot];
+      long duration = durations[slot];
+      int code = codes[slot];
+      // A slot rewritten while it was read belongs to a later record
+      VarHandle.acquireFence();
+      if (sequences.get(slot) != sequence) {
+        continue;
+      }
+      StringBuilder line =
+          new StringBuilder("{\"seq\":")
+              .append(sequence)
+              .append(",\"timeNanos\":")
+              .append(time + epochOffsetNanos)
+              .append(",\"event\":\"")
+              .append(KINDS[kind])
+              .append("\",\"id\":")
+              .append(id);
+      if (name >= 0) {
+        appendJsonString(line.append(",\"name\":"), symbols.get(name));
+      }
+      if (server >= 0) {
+        appendJsonString(line.append(",\"server\":"), symbols.get(server));
+      }
+      writer.write(
+          line.append(",\"durationNanos\":")
+              .append(duration)
+              .append(",\"code\":")
+              .append(code)
+              .append("}\n")
+              .toString());
+      written++;
+    }
+    return written;
+  }
+
+  // Quotes and escapes a symbol; names and addresses come from the driver and the server
+  private static void appendJsonString(StringBuilder line, String value) {
+    line.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        line.append('\\').append(c);
+      } else if (c < 0x20) {
+        line.append(String.format("\\u%04x", (int) c));
+      } else {
+        line.append(c);
+      }
+    }
+    line.append('"');
+  }
+
+  // Header, symbol table, then fixed-size records whose name and server are symbol ids
+  private int writeBinary(DataOutputStream out, long start, long end) throws IOException {
+    out.write(BINARY_MAGIC);
+    out.writeInt(KINDS.length);
+    for (Kind kind : KINDS) {
+      out.writeUTF(kind.name());
+    }
+    List<String> table = List.copyOf(symbols);
+    out.writeInt(table.size());
+    for (String symbol : table) {
+      out.writeUTF(symbol);
+    }
+    int written = 0;
+    for (long sequence = start; sequence < end; sequence++) {
+      int slot = (int) (sequence & mask);
+      if (sequences.get(slot) != sequence) {
+        continue;
+      }
+      long time = times[slot];
+      byte kind = kinds[slot];
+      int id = ids[slot];
+      int name = names[slot];
+      int server = servers[slot];
+      long duration = durations[slot];
+      int code = codes[slot];
+      VarHandle.acquireFence();
+      if (sequences.get(slot) != sequence || name >= table.size() || server >= table.size()) {
+        continue;
+      }
+      out.writeLong(sequence);
+      out.writeLong(time + epochOffsetNanos);
+      out.writeByte(kind);
+      out.writeInt(id);
+      out.writeInt(name);
+      out.writeInt(server);
+      out.writeLong(duration);
+      out.writeInt(code);
+      written++;
+    }
+    return written;
+  }
+
+  @Override
+  public void printFinalReport() {
+    if (!enabled) {
+      return;
+    }
+    System.out.println("[FLIGHT-RECORDER], Events, " + next.get());
+    System.out.println("[FLIGHT-RECORDER], Capacity, " + (mask + 1));
+    System.out.println("[FLIGHT-RECORDER], Dumps, " + dumps.sum());
+  }
+}
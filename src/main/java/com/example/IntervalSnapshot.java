@@ -0,0 +1,80 @@
+package com.example;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Throughput, errors and per-operation latency over one reporting interval. */
+public class IntervalSnapshot {
+  private final long timestampMillis;
+  private final double elapsedSeconds;
+  private final double intervalSeconds;
+  private final long operations;
+  private final long errors;
+  private final Map<OperationType, LatencySummary> latencies;
+  // Empty unless the run is open-loop
+  private final Map<OperationType, LatencySummary> intendedLatencies;
+
+  public IntervalSnapshot(
+      long timestampMillis,
+      double elapsedSeconds,
+      double intervalSeconds,
+      long operations,
+      long errors,
+      Map<OperationType, LatencySummary> latencies,
+      Map<OperationType, LatencySummary> intendedLatencies) {
+    this.timestampMillis = timestampMillis;
+    this.elapsedSeconds = elapsedSeconds;
+    this.intervalSeconds = intervalSeconds;
+    this.operations = operations;
+    this.errors = errors;
+    this.latencies = Collections.unmodifiableMap(latencies);
+    this.intendedLatencies = Collections.unmodifiableMap(intendedLatencies);
+  }
+
+  public long getTimestampMillis() {
+    return timestampMillis;
+  }
+
+  public double getElapsedSeconds() {
+    return elapsedSeconds;
+  }
+
+  public double getIntervalSeconds() {
+    return intervalSeconds;
+  }
+
+  public long getOperations() {
+    return operations;
+  }
+
+  public long getErrors() {
+    return errors;
+  }
+
+  public double getThroughput() {
+    return intervalSeconds > 0 ? operations / intervalSeconds : 0;
+  }
+
+  public Map<OperationType, LatencySummary> getLatencies() {
+    return latencies;
+  }
+
+  public Map<OperationType, LatencySummary> getIntendedLatencies() {
+    return intendedLatencies;
+  }
+
+  /** All latency series keyed by report label, with each Intended-OP right after its OP. */
+  public Map<String, LatencySummary> getLatencySeries() {
+    Map<String, LatencySummary> series = new LinkedHashMap<>();
+    for (OperationType type : OperationType.values()) {
+      if (latencies.containsKey(type)) {
+        series.put(type.getLabel(), latencies.get(type));
+      }
+      if (intendedLatencies.containsKey(type)) {
+        series.put(MetricsManager.intendedLabel(type), intendedLatencies.get(type));
+      }
+    }
+    return series;
+  }
+}
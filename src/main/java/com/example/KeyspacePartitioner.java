@@ -0,0 +1,110 @@
+package com.example;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Splits the load's key space [0, totalDocuments) into work units of consecutive indexes, many more
+ * than there are loader threads. Each thread starts with its own contiguous slice of units and
+ * claims them in order; once its slice is used up it steals the next unclaimed unit of the slice
+ * with the most left, so no thread sits idle while a slower one works through a fixed share. Unit
+ * layout depends only on the document count and unit size, so a checkpoint can refer to units by
+ * id.
+ */
+public class KeyspacePartitioner implements MetricsReporter {
+  private final long totalDocuments;
+  private final long unitSize;
+  private final int unitCount;
+  // Thread i's slice ends at unit sliceEnd[i]; nextUnit[i] is its next unclaimed unit
+  private final int[] sliceEnd;
+  private final AtomicLong[] nextUnit;
+  private final LongAdder stolenUnits = new LongAdder();
+
+  public KeyspacePartitioner(long totalDocuments, int threads, long unitSize) {
+    this.totalDocuments = totalDocuments;
+    this.unitSize = unitSize;
+    long count = (totalDocuments + unitSize - 1) / unitSize;
+    if (count > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException(count + " work units; raise the work unit size");
+    }
+    this.unitCount = (int) count;
+    this.sliceEnd = new int[threads];
+    this.nextUnit = new AtomicLong[threads];
+    for (int i = 0; i < threads; i++) {
+      nextUnit[i] = new AtomicLong((long) unitCount * i / threads);
+      sliceEnd[i] = (int) ((long) unitCount * (i + 1) / threads);
+    }
+  }
+
+  /**
+   * Unit size giving LOAD_WORK_UNITS_PER_THREAD units per loader thread, but never less than one
+   * batch.
+   */
+  public static long unitSize(Config config) {
+    long units = Math.max(1, (long) config.getNumThreads() * config.getLoadWorkUnitsPerThread());
+    long size = (config.getTotalDocuments() + units - 1) / units;
+    return Math.max(1, Math.max(config.getLoadBatchSize(), size));
+  }
+
+  public long getTotalDocuments() {
+    return totalDocuments;
+  }
+
+  public long getUnitSize() {
+    return unitSize;
+  }
+
+  public int getUnitCount() {
+    return unitCount;
+  }
+
+  /** First index of unit {@code unit}. */
+  public long unitStart(int unit) {
+    return unit * unitSize;
+  }
+
+  /** One past the last index of unit {@code unit}. */
+  public long unitEnd(int unit) {
+    return Math.min(totalDocuments, (unit + 1) * unitSize);
+  }
+
+  /**
+   * Claims the next work unit for {@code thread}: from its own slice while any are left, then from
+   * the slice with the most unclaimed units. Returns -1 once every unit has been claimed.
+   */
+  public int next(int thread) {
+    int unit = claim(thread);
+    while (unit < 0) {
+      int victim = -1;
+      long mostLeft = 0;
+      for (int i = 0; i < nextUnit.length; i++) {
+        long left = sliceEnd[i] - nextUnit[i].get();
+        if (left > mostLeft) {
+          mostLeft = left;
+          victim = i;
+        }
+      }
+      if (victim < 0) {
+        return -1;
+      }
+      unit = claim(victim);
+      if (unit >= 0) {
+        stolenUnits.increment();
+      }
+    }
+    return unit;
+  }
+
+  private int claim(int slice) {
+    // Claims past the end are harmless: the cursor only ever moves forward
+    long unit = nextUnit[slice].getAndIncrement();
+    return unit < sliceEnd[slice] ? (int) unit : -1;
+  }
+
+  @Override
+  public void printFinalReport() {
+    System.out.println("[LOAD-PARTITION], WorkUnits, " + unitCount);
+    System.out.println("[LOAD-PARTITION], UnitSize, " + unitSize);
+    System.out.println("[LOAD-PARTITION], StolenUnits, " + stolenUnits.sum());
+  }
+}
@@ -0,0 +1,53 @@
+package com.example;
+
+import java.util.concurrent.TimeUnit;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Latency histogram in microseconds. Writers record through a wait-free HdrHistogram {@link
+ * Recorder}; the reporter thread periodically swaps out the interval histogram and folds it into
+ * the cumulative one.
+ */
+public class LatencyHistogram {
+  private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.HOURS.toMicros(1);
+  private static final int SIGNIFICANT_DIGITS = 3;
+
+  private final Recorder recorder = new Recorder(1, HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+  private final Histogram cumulative =
+      new Histogram(1, HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+  private Histogram recycled;
+  private volatile Histogram lastInterval =
+      new Histogram(1, HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+
+  public void recordNanos(long latencyNanos) {
+    long micros = TimeUnit.NANOSECONDS.toMicros(latencyNanos);
+    recorder.recordValue(Math.max(0, Math.min(micros, HIGHEST_TRACKABLE_MICROS)));
+  }
+
+  /**
+   * Closes the current interval, adds it to the cumulative histogram and returns a copy of it. Only
+   * the reporting thread should call this.
+   */
+  public synchronized Histogram sampleInterval() {
+    recycled = recorder.getIntervalHistogram(recycled);
+    cumulative.add(recycled);
+    Histogram interval = recycled.copy();
+    lastInterval = interval;
+    return interval;
+  }
+
+  public synchronized Histogram getCumulative() {
+    return cumulative.copy();
+  }
+
+  public Histogram getLastInterval() {
+    return lastInterval;
+  }
+
+  public synchronized void reset() {
+    recorder.reset();
+    cumulative.reset();
+    lastInterval = new Histogram(1, HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+  }
+}
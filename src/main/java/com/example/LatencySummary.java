@@ -0,0 +1,87 @@
+package com.example;
+
+import org.HdrHistogram.Histogram;
+
+/** Latency statistics in microseconds, captured from a histogram at one point in time. */
+public class LatencySummary {
+  private final long count;
+  private final long min;
+  private final long max;
+  private final double mean;
+  private final long p50;
+  private final long p95;
+  private final long p99;
+  private final long p999;
+  private final long p9999;
+
+  private LatencySummary(
+      long count,
+      long min,
+      long max,
+      double mean,
+      long p50,
+      long p95,
+      long p99,
+      long p999,
+      long p9999) {
+    this.count = count;
+    this.min = min;
+    this.max = max;
+    this.mean = mean;
+    this.p50 = p50;
+    this.p95 = p95;
+    this.p99 = p99;
+    this.p999 = p999;
+    this.p9999 = p9999;
+  }
+
+  public static LatencySummary of(Histogram histogram) {
+    long count = histogram.getTotalCount();
+    return new LatencySummary(
+        count,
+        count > 0 ? histogram.getMinValue() : 0,
+        histogram.getMaxValue(),
+        count > 0 ? histogram.getMean() : 0,
+        histogram.getValueAtPercentile(50.0),
+        histogram.getValueAtPercentile(95.0),
+        histogram.getValueAtPercentile(99.0),
+        histogram.getValueAtPercentile(99.9),
+        histogram.getValueAtPercentile(99.99));
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public long getMin() {
+    return min;
+  }
+
+  public long getMax() {
+    return max;
+  }
+
+  public double getMean() {
+    return mean;
+  }
+
+  public long getP50() {
+    return p50;
+  }
+
+  public long getP95() {
+    return p95;
+  }
+
+  public long getP99() {
+    return p99;
+  }
+
+  public long getP999() {
+    return p999;
+  }
+
+  public long getP9999() {
+    return p9999;
+  }
+}
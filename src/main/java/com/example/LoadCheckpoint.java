@@ -0,0 +1,388 @@
+package com.example;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Progress of a batch-mode load, kept in LOAD_CHECKPOINT_FILE so a load that dies can be resumed.
+ * Loaders insert each {@link KeyspacePartitioner} work unit in index order, so a unit's progress is
+ * a single index: the next one to load. Batches skipped after their retries are kept as ranges to
+ * backfill. The file is rewritten at most every LOAD_CHECKPOINT_INTERVAL_MS, and at once when a
+ * batch is skipped, so a restart repeats at most the batches of one interval; {@link #verify} then
+ * finds those from the collection. The state is copied under the checkpoint's lock and written
+ * outside it, so loaders recording batches never wait on file I/O.
+ */
+public class LoadCheckpoint implements MetricsReporter {
+  private static final Logger logger = LoggerFactory.getLogger(LoadCheckpoint.class);
+  private static final JsonWriterSettings JSON =
+      JsonWriterSettings.builder().outputMode(JsonMode.RELAXED).build();
+
+  private final Path path;
+  private final long totalDocuments;
+  private final long unitSize;
+  // SEED of the run that started the load, which every resumed run generates from
+  private long seed;
+  private final long saveIntervalNanos;
+  // Next index to load in each work unit
+  private final long[] next;
+  // Skipped [from, to) ranges of each work unit, in index order
+  private final List<List<long[]>> skipped = new ArrayList<>();
+  // Read from an existing file rather than started
+  private boolean resumed;
+  private long resumedDocuments;
+  private long backfilledDocuments;
+  private long lastSave = System.nanoTime();
+  // Copies of the state taken so far, and the newest one in the file, which fileLock guards
+  private long snapshots;
+  private long writtenSnapshot;
+  private final Object fileLock = new Object();
+
+  private LoadCheckpoint(Config config, long unitSize) {
+    this.path = Path.of(config.getLoadCheckpointFile());
+    this.totalDocuments = config.getTotalDocuments();
+    this.unitSize = unitSize;
+    this.seed = config.getSeed();
+    this.saveIntervalNanos =
+        TimeUnit.MILLISECONDS.toNanos(config.getLoadCheckpointIntervalMillis());
+    this.next = new long[(int) ((totalDocuments + unitSize - 1) / unitSize)];
+    for (int i = 0; i < next.length; i++) {
+      next[i] = unitStart(i);
+      skipped.add(new ArrayList<>());
+    }
+  }
+
+  /**
+   * Reads LOAD_CHECKPOINT_FILE, or starts a new checkpoint with work units of {@code unitSize} if
+   * there is none. A resumed load keeps the work units it started with, whatever NUM_THREADS is
+   * now, but must be of the same number of documents.
+   */
+  public static LoadCheckpoint open(Config config, long unitSize) {
+    Path path = Path.of(config.getLoadCheckpointFile());
+    if (!Files.exists(path)) {
+      logger.info("No load checkpoint at {}, loading from the start", path);
+      LoadCheckpoint checkpoint = new LoadCheckpoint(config, unitSize);
+      checkpoint.save();
+      return checkpoint;
+    }
+    Document saved;
+    try {
+      saved = Document.parse(Files.readString(path));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not read load checkpoint " + path, e);
+    }
+    long savedTotal = toLong(saved.get("totalDocuments"));
+    if (savedTotal != config.getTotalDocuments()) {
+      throw new IllegalStateException(
+          "Load checkpoint "
+              + path
+              + " is for "
+              + savedTotal
+              + " documents, not "
+              + config.getTotalDocuments()
+              + "; run with the same TOTAL_DATA_SIZE_GB and TARGET_DOCUMENT_SIZE or remove it");
+    }
+    LoadCheckpoint checkpoint = new LoadCheckpoint(config, toLong(saved.get("unitSize")));
+    long savedSeed = toLong(saved.get("seed"));
+    if (savedSeed != checkpoint.seed) {
+      logger.info(
+          "Load started with SEED {}, generating from it instead of {}",
+          savedSeed,
+          checkpoint.seed);
+      checkpoint.seed = savedSeed;
+    }
+    List<?> savedNext = saved.getList("next", Object.class);
+    for (int i = 0; i < savedNext.size(); i++) {
+      checkpoint.next[i] = toLong(savedNext.get(i));
+      checkpoint.resumedDocuments += checkpoint.next[i] - checkpoint.unitStart(i);
+    }
+    for (List<?> range : saved.getList("skipped", List.class)) {
+      long from = toLong(range.get(0));
+      checkpoint
+          .skipped
+          .get((int) (from / checkpoint.unitSize))
+          .add(new long[] {from, toLong(range.get(1))});
+    }
+    checkpoint.resumedDocuments -= checkpoint.skippedDocuments();
+    checkpoint.resumed = true;
+    logger.info(
+        "Resuming load from {}: {} documents already loaded, {} skipped",
+        path,
+        checkpoint.resumedDocuments,
+        checkpoint.skippedDocuments());
+    return checkpoint;
+  }
+
+  public long getUnitSize() {
+    return unitSize;
+  }
+
+  /** The seed the load was started with; resumed runs must generate from it. */
+  public long getSeed() {
+    return seed;
+  }
+
+  /**
+   * Checks the end of each unfinished work unit against the collection with one bounded range
+   * query. Batches inserted after the last save are found there and not loaded again; a unit whose
+   * checkpointed documents are missing means the collection is not the one that was being loaded.
+   */
+  public synchronized void verify(MongoCollection<?> collection) {
+    if (!resumed) {
+      return;
+    }
+    MongoCollection<BsonDocument> documents = collection.withDocumentClass(BsonDocument.class);
+    for (int i = 0; i < next.length; i++) {
+      long start = unitStart(i);
+      long end = unitEnd(i);
+      if (next[i] == end) {
+        continue;
+      }
+      long lastLoaded = lastLoaded(i);
+      BsonDocument last =
+          documents
+              .find(Filters.and(Filters.gte("index", start), Filters.lt("index", end)))
+              .projection(Projections.include("index"))
+              .sort(Sorts.descending("index"))
+              .limit(1)
+              .first();
+      long found = last != null ? last.getNumber("index").longValue() : start - 1;
+      if (found < lastLoaded) {
+        throw new IllegalStateException(
+            String.format(
+                "Load checkpoint %s has documents up to index %d in work unit %d, but the"
+                    + " collection only has them up to %d; remove the checkpoint to reload",
+                path, lastLoaded, i, found));
+      }
+      if (found >= next[i]) {
+        logger.info(
+            "Work unit {}: documents {} to {} were loaded after the last checkpoint",
+            i,
+            next[i],
+            found);
+        resumedDocuments += found + 1 - next[i];
+        next[i] = found + 1;
+      }
+    }
+  }
+
+  /** The first index of work unit {@code unit} still to load. */
+  public synchronized long resumeFrom(int unit) {
+    return next[unit];
+  }
+
+  /**
+   * Records that work unit {@code unit} is done with [from, to). The documents at the positions in
+   * {@code failed}, counted from {@code from}, were skipped; all the others were inserted.
+   */
+  public void recordBatch(int unit, long from, long to, BitSet failed) {
+    Snapshot snapshot = null;
+    synchronized (this) {
+      next[unit] = to;
+      if (!failed.isEmpty()) {
+        List<long[]> ranges = skipped.get(unit);
+        for (int start = failed.nextSetBit(0); start >= 0; ) {
+          int end = failed.nextClearBit(start);
+          addSkipped(ranges, from + start, from + end);
+          start = failed.nextSetBit(end);
+        }
+        snapshot = snapshot();
+      } else if (System.nanoTime() - lastSave >= saveIntervalNanos) {
+        snapshot = snapshot();
+      }
+    }
+    if (snapshot != null) {
+      write(snapshot);
+    }
+  }
+
+  // Appends [from, to) to a unit's skipped ranges, joining it to the last one if they touch
+  private static void addSkipped(List<long[]> ranges, long from, long to) {
+    long[] last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+    if (last != null && last[1] == from) {
+      last[1] = to;
+    } else {
+      ranges.add(new long[] {from, to});
+    }
+  }
+
+  /**
+   * Inserts the documents of every skipped range that the collection does not have, finding them
+   * with the same bounded range queries. Ranges that fail again stay in the checkpoint.
+   */
+  public synchronized <T> void backfill(
+      MongoCollection<T> collection, DocumentFactory<T> documentFactory, int batchSize) {
+    long total = skippedDocuments();
+    if (total == 0) {
+      return;
+    }
+    logger.info("Backfilling {} skipped documents", total);
+    MongoCollection<BsonDocument> documents = collection.withDocumentClass(BsonDocument.class);
+    MetricsManager metricsManager = MetricsManager.getInstance();
+    InsertManyOptions unordered = new InsertManyOptions().ordered(false);
+    for (int i = 0; i < next.length; i++) {
+      if (skipped.get(i).isEmpty()) {
+        continue;
+      }
+      List<long[]> remaining = new ArrayList<>();
+      for (long[] range : skipped.get(i)) {
+        long from = range[0];
+        try {
+          while (from < range[1]) {
+            long to = Math.min(from + batchSize, range[1]);
+            Bson filter = Filters.and(Filters.gte("index", from), Filters.lt("index", to));
+            Set<Long> present = new HashSet<>();
+            for (BsonDocument document :
+                documents.find(filter).projection(Projections.include("index"))) {
+              present.add(document.getNumber("index").longValue());
+            }
+            List<T> batch = new ArrayList<>();
+            for (long index = from; index < to; index++) {
+              if (!present.contains(index)) {
+                batch.add(documentFactory.generate(index));
+              }
+            }
+            if (!batch.isEmpty()) {
+              long startTime = System.nanoTime();
+              collection.insertMany(batch, unordered);
+              metricsManager.recordLatency(OperationType.UPDATE, System.nanoTime() - startTime);
+              metricsManager.addTotalOperations(batch.size());
+              metricsManager.addWriteOperations(batch.size());
+              backfilledDocuments += batch.size();
+            }
+            from = to;
+          }
+        } catch (MongoException e) {
+          logger.error(
+              "Work unit {}: backfill of [{}, {}) failed: {}", i, from, range[1], e.getMessage());
+          metricsManager.incrementFailedOperations();
+          remaining.add(new long[] {from, range[1]});
+        }
+      }
+      skipped.set(i, remaining);
+    }
+    save();
+  }
+
+  /** Writes the checkpoint, replacing the previous file only once the new one is complete. */
+  public void save() {
+    Snapshot snapshot;
+    synchronized (this) {
+      snapshot = snapshot();
+    }
+    write(snapshot);
+  }
+
+  // Copies the state to write; the caller holds the checkpoint's lock. Claiming the interval here
+  // keeps other loaders from copying it again while this copy is written.
+  private Snapshot snapshot() {
+    List<Long> nextIndexes = new ArrayList<>(next.length);
+    List<List<Long>> ranges = new ArrayList<>();
+    for (int i = 0; i < next.length; i++) {
+      nextIndexes.add(next[i]);
+      for (long[] range : skipped.get(i)) {
+        ranges.add(List.of(range[0], range[1]));
+      }
+    }
+    Document checkpoint =
+        new Document("totalDocuments", totalDocuments)
+            .append("unitSize", unitSize)
+            .append("seed", seed)
+            .append("next", nextIndexes)
+            .append("skipped", ranges);
+    lastSave = System.nanoTime();
+    return new Snapshot(++snapshots, checkpoint);
+  }
+
+  // Writes a copy unless a newer one is already in the file, so the file never goes backwards
+  private void write(Snapshot snapshot) {
+    synchronized (fileLock) {
+      if (snapshot.number <= writtenSnapshot) {
+        return;
+      }
+      Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+      try {
+        Files.writeString(temp, snapshot.checkpoint.toJson(JSON));
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        writtenSnapshot = snapshot.number;
+      } catch (IOException e) {
+        logger.error("Failed to write load checkpoint {}: {}", path, e.getMessage());
+      }
+    }
+  }
+
+  @Override
+  public synchronized void printFinalReport() {
+    System.out.println("[LOAD-CHECKPOINT], ResumedDocuments, " + resumedDocuments);
+    System.out.println("[LOAD-CHECKPOINT], BackfilledDocuments, " + backfilledDocuments);
+    System.out.println("[LOAD-CHECKPOINT], SkippedDocuments, " + skippedDocuments());
+    for (int i = 0; i < next.length; i++) {
+      for (long[] range : skipped.get(i)) {
+        System.out.println("[LOAD-CHECKPOINT], SkippedRange, [" + range[0] + ", " + range[1] + ")");
+      }
+    }
+  }
+
+  private long unitStart(int unit) {
+    return unit * unitSize;
+  }
+
+  private long unitEnd(int unit) {
+    return Math.min(totalDocuments, (unit + 1) * unitSize);
+  }
+
+  // The highest index of the unit that was inserted, skipping a trailing run of skipped ranges
+  private long lastLoaded(int unit) {
+    long last = next[unit] - 1;
+    List<long[]> ranges = skipped.get(unit);
+    for (int r = ranges.size() - 1; r >= 0 && ranges.get(r)[1] == last + 1; r--) {
+      last = ranges.get(r)[0] - 1;
+    }
+    return last;
+  }
+
+  private long skippedDocuments() {
+    long total = 0;
+    for (List<long[]> ranges : skipped) {
+      for (long[] range : ranges) {
+        total += range[1] - range[0];
+      }
+    }
+    return total;
+  }
+
+  private static long toLong(Object value) {
+    return ((Number) value).longValue();
+  }
+
+  private static final class Snapshot {
+    private final long number;
+    private final Document checkpoint;
+
+    private Snapshot(long number, Document checkpoint) {
+      this.number = number;
+      this.checkpoint = checkpoint;
+    }
+  }
+}
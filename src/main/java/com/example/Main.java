@@ -1,5 +1,7 @@
 package com.example;
 
+import com.example.keys.KeyChooserFactory;
+import com.example.server.NullMongoServer;
 import com.mongodb.MongoCommandException;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
@@ -8,148 +10,547 @@ import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.model.CreateCollectionOptions;
 import com.mongodb.client.model.IndexOptions;
 import com.mongodb.client.model.Indexes;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.text.DecimalFormat;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.SplittableRandom;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class Main {
   private static final Logger logger = LoggerFactory.getLogger(Main.class);
+  // Stands in for the current time when SEED is set, so timestamps are reproducible too
+  private static final Instant SEEDED_EPOCH = Instant.parse("2024-01-01T00:00:00Z");
   // for stress testing
   private static final int STRESS_TEST_OPERATIONS_PER_THREAD = 1_000_000;
   private static final AtomicBoolean stressTestKeepRunning = new AtomicBoolean(true);
+  // Set when NULL_SERVER=true; every client then connects to it instead of MONGODB_URI
+  private static NullMongoServer nullServer;
 
   public static void main(String[] args) {
     Config config = Config.fromEnv();
     boolean isLoad = args.length > 0 && args[0].equals("load");
     boolean isStress = !isLoad && args.length > 0 && args[0].equals("stress");
 
-    if (isLoad) {
-      logger.debug("Starting data loading phase");
-      loadData(config);
-    } else if (isStress) {
-      logger.debug("Starting stress testing phase");
-      runStressTest(config);
-    } else {
-      int writePercentage = config.getWritePercentage();
-      int readPercentage = 100 - writePercentage;
-      System.out.printf("[WORKLOAD], READ, %d%%.%n", readPercentage);
-      System.out.printf("[WORKLOAD], UPDATE, %d%%.%n", writePercentage);
-      System.out.println("Starting test.");
-      logger.debug("Starting load testing phase");
-      runLoadTest(config);
+    if (config.isVirtualThreads() && Runtime.version().feature() < 21) {
+      logger.error(
+          "THREAD_MODE=virtual requires Java 21 or later, running on {}", Runtime.version());
+      return;
+    }
+    if (config.isNullServer()) {
+      startNullServer(config);
+    }
+    MetricsManager.getInstance().addReporter(CommandLatencies.getInstance());
+    MetricsManager.getInstance().addReporter(ConnectionPoolMetrics.getInstance());
+    ServerHealth.getInstance().setDegradedFactor(config.getRttDegradedFactor());
+    MetricsManager.getInstance().addReporter(ServerHealth.getInstance());
+    if (config.isConnectionPoolPerCaller()) {
+      logger.info(
+          "Connection pools sized for {} concurrent callers", config.getConnectionPoolMaxSize());
+    }
+    if (config.isFlightRecorder()) {
+      FlightRecorder.getInstance()
+          .start(
+              config.getFlightRecorderEvents(),
+              config.getFlightRecorderDir(),
+              config.isFlightRecorderBinary(),
+              config.getFlightRecorderLatencyMillis());
+      MetricsManager.getInstance().addReporter(FlightRecorder.getInstance());
+    }
+    FailoverAnalyzer failoverAnalyzer = FailoverAnalyzer.getInstance();
+    if (config.isFailoverAnalysis()) {
+      failoverAnalyzer.start(
+          config.getFailoverResolutionMillis(), config.getFailoverBaselineSeconds());
+      MetricsManager.getInstance().addReporter(failoverAnalyzer);
+    }
+    PinningMonitor pinningMonitor = null;
+    if (config.isVirtualThreads()) {
+      logger.info(
+          "Virtual threads: {} logical clients sharing up to {} connections",
+          config.getNumThreads(),
+          config.getConnectionPoolMaxSize());
+      pinningMonitor = new PinningMonitor(Duration.ofMillis(config.getPinnedThresholdMillis()));
+      pinningMonitor.start();
+      MetricsManager.getInstance().addReporter(pinningMonitor);
+    }
+    try {
+      if (isLoad) {
+        logger.debug("Starting data loading phase");
+        loadData(config);
+      } else if (isStress) {
+        logger.debug("Starting stress testing phase");
+        runStressTest(config);
+      } else {
+        Workload workload = config.getWorkload();
+        System.out.printf("[WORKLOAD], Name, %s%n", workload.getName());
+        for (OperationType type : workload.getOperationTypes()) {
+          System.out.printf(
+              "[WORKLOAD], %s, %s%%.%n",
+              type.getLabel(), new DecimalFormat("0.#").format(workload.getPercentage(type)));
+        }
+        System.out.println("Starting test.");
+        logger.debug("Starting load testing phase");
+        runLoadTest(config);
+      }
+    } finally {
+      if (pinningMonitor != null) {
+        pinningMonitor.close();
+      }
+      failoverAnalyzer.close();
+      stopNullServer();
     }
   }
 
+  private static void startNullServer(Config config) {
+    RawBsonDocument findResult =
+        new RawDocumentGenerator(
+                new FakerValueSource(new Random(config.getSeed()), Clock.systemUTC()),
+                config.getTargetDocumentSize())
+            .generate(0);
+    nullServer =
+        new NullMongoServer(
+            config.getNullServerLatencyMicros(),
+            config.getNullServerJitterMicros(),
+            config.getNullServerErrorRate(),
+            findResult);
+    try {
+      nullServer.start();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not start the null server", e);
+    }
+    MetricsManager.getInstance().addReporter(nullServer);
+  }
+
+  private static void stopNullServer() {
+    if (nullServer == null) {
+      return;
+    }
+    try {
+      nullServer.close();
+    } catch (IOException e) {
+      logger.warn("Error stopping the null server: {}", e.getMessage());
+    }
+  }
+
+  private static String connectionString(Config config) {
+    return nullServer != null ? nullServer.getConnectionString() : config.getConnectionString();
+  }
+
   private static void loadData(Config config) {
     MetricsManager metricsManager = MetricsManager.getInstance();
     metricsManager.resetStartTime();
 
     try (MongoClient mongoClient =
-        MongoClients.create(MongoClientSettingsBuilder.build(config.getConnectionString()))) {
+        MongoClients.create(MongoClientSettingsBuilder.build(connectionString(config), config))) {
       MongoDatabase database = mongoClient.getDatabase(config.getDatabaseName());
       MongoCollection<Document> collection = database.getCollection(config.getCollectionName());
 
       // Setup index
       setupIndex(config, mongoClient);
 
-      long totalDocuments = (long) config.getNumThreads() * config.getDocumentsPerThread();
-      logger.info("Total documents to insert {}", totalDocuments);
-
-      ExecutorService executor = Executors.newFixedThreadPool(config.getNumThreads());
+      logger.info("Total documents to insert {}", config.getTotalDocuments());
+      LoadCheckpoint checkpoint = openCheckpoint(config, collection);
 
-      for (int i = 0; i < config.getNumThreads(); i++) {
-        int startIndex = i * config.getDocumentsPerThread();
-        executor.submit(
-            new DataLoader(
+      // Each document is generated from its own seed, so its content does not depend on the
+      // thread count or on which thread (or load mode) produces it. A checkpointed load always
+      // generates from the checkpoint's seed and a fixed clock, so a resumed or backfilled
+      // document is the one the first run would have inserted.
+      long seed = checkpoint != null ? checkpoint.getSeed() : config.getSeed();
+      if (checkpoint != null) {
+        logger.info("Generating data from the load checkpoint's seed {}", seed);
+      } else {
+        logSeed(config);
+      }
+      Supplier<ValueSource> valueSources =
+          valueSources(config, seed, Seeds.mix(seed, 0), checkpoint != null);
+      ExecutorService executor;
+      // Retries the batches skipped so far, once the loaders are done
+      Runnable backfill;
+      if (config.isRawDocuments()) {
+        MongoCollection<RawBsonDocument> rawCollection =
+            database.getCollection(config.getCollectionName(), RawBsonDocument.class);
+        Supplier<DocumentFactory<RawBsonDocument>> documentFactories =
+            () -> {
+              ValueSource values = valueSources.get();
+              RawDocumentGenerator generator =
+                  new RawDocumentGenerator(values, config.getTargetDocumentSize());
+              return index -> {
+                values.reseed(Seeds.mix(seed, index));
+                return generator.generate(index);
+              };
+            };
+        executor =
+            startLoaders(
+                config,
+                rawCollection,
+                document -> document.getByteBuffer().remaining(),
+                documentFactories,
+                checkpoint);
+        backfill = backfill(config, checkpoint, rawCollection, documentFactories);
+      } else {
+        Supplier<DocumentFactory<Document>> documentFactories =
+            () -> {
+              ValueSource values = valueSources.get();
+              return index -> {
+                values.reseed(Seeds.mix(seed, index));
+                return DocumentGenerator.generateRichDocument(
+                    values, index, config.getTargetDocumentSize());
+              };
+            };
+        executor =
+            startLoaders(
+                config,
                 collection,
-                config.getDocumentsPerThread(),
-                startIndex,
-                config.getTargetDocumentSize(),
-                i));
+                // Estimated; encoding each document just to measure it would cost a second pass
+                document -> config.getTargetDocumentSize(),
+                documentFactories,
+                checkpoint);
+        backfill = backfill(config, checkpoint, collection, documentFactories);
       }
 
-      executor.shutdown();
-
       // Start a progress logging thread
-      Thread progressLogger =
-          new Thread(
-              () -> {
-                while (!executor.isTerminated()) {
-                  metricsManager.printCurrentMetrics();
-                  try {
-                    Thread.sleep(10000); // Log every 10 seconds
-                  } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                  }
-                }
-              });
-      progressLogger.start();
+      Thread progressLogger = startProgressLogger(config, executor);
 
       executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      backfill.run();
       progressLogger.interrupt(); // Stop the progress logger
       progressLogger.join();
+      if (checkpoint != null) {
+        checkpoint.save();
+      }
 
       metricsManager.printCurrentMetrics(); // Print final metrics
       metricsManager.printFinalReport();
+      exportTimeline(config);
     } catch (InterruptedException e) {
       logger.error("Data loading interrupted", e);
       Thread.currentThread().interrupt();
     }
   }
 
+  /** Submits the loader tasks and returns their executor, already shut down. */
+  private static <T> ExecutorService startLoaders(
+      Config config,
+      MongoCollection<T> collection,
+      ToIntFunction<T> encodedSize,
+      Supplier<DocumentFactory<T>> documentFactories,
+      LoadCheckpoint checkpoint) {
+    if (config.isPipelinedLoad()) {
+      PipelinedDataLoader<T> pipeline =
+          new PipelinedDataLoader<>(collection, documentFactories, config);
+      MetricsManager.getInstance().addReporter(pipeline);
+      return pipeline.start();
+    }
+
+    AdaptiveBatchSizer<T> sizer = null;
+    if (config.isAdaptiveLoadBatch()) {
+      sizer = new AdaptiveBatchSizer<>(config, encodedSize);
+      MetricsManager.getInstance().addReporter(sizer);
+    }
+    // A resumed load keeps the work units it was checkpointed with
+    KeyspacePartitioner partitioner =
+        new KeyspacePartitioner(
+            config.getTotalDocuments(),
+            config.getNumThreads(),
+            checkpoint != null ? checkpoint.getUnitSize() : KeyspacePartitioner.unitSize(config));
+    MetricsManager.getInstance().addReporter(partitioner);
+    logger.info(
+        "Loading {} work units of {} documents",
+        partitioner.getUnitCount(),
+        partitioner.getUnitSize());
+    ExecutorService executor = newWorkerExecutor(config);
+    for (int i = 0; i < config.getNumThreads(); i++) {
+      executor.submit(
+          new DataLoader<>(
+              collection,
+              partitioner,
+              config.getLoadBatchSize(),
+              documentFactories.get(),
+              sizer,
+              checkpoint,
+              i));
+    }
+    executor.shutdown();
+    return executor;
+  }
+
+  /**
+   * Opens LOAD_CHECKPOINT_FILE when it is set, and checks a resumed checkpoint against the end of
+   * each partition in the collection. Returns null when loads are not checkpointed.
+   */
+  private static LoadCheckpoint openCheckpoint(Config config, MongoCollection<?> collection) {
+    if (config.getLoadCheckpointFile() == null) {
+      return null;
+    }
+    if (config.isPipelinedLoad()) {
+      logger.warn("LOAD_CHECKPOINT_FILE is ignored with LOAD_MODE=pipelined");
+      return null;
+    }
+    LoadCheckpoint checkpoint = LoadCheckpoint.open(config, KeyspacePartitioner.unitSize(config));
+    if (config.isNullServer()) {
+      // Its find replies do not depend on the filter
+      logger.info("Null server: not checking the load checkpoint against the collection");
+    } else {
+      checkpoint.verify(collection);
+    }
+    MetricsManager.getInstance().addReporter(checkpoint);
+    return checkpoint;
+  }
+
+  private static <T> Runnable backfill(
+      Config config,
+      LoadCheckpoint checkpoint,
+      MongoCollection<T> collection,
+      Supplier<DocumentFactory<T>> documentFactories) {
+    if (checkpoint == null || !config.isLoadBackfill()) {
+      return () -> {};
+    }
+    return () ->
+        checkpoint.backfill(collection, documentFactories.get(), config.getLoadBatchSize());
+  }
+
+  /**
+   * Returns a factory of per-thread value sources: pooled picks when VALUE_POOL_SIZE is set (the
+   * pool is built here, once, from {@code runSeed}), otherwise a dedicated Faker per thread. The
+   * n-th source created is seeded from {@code seed} and n. With SEED set, or when {@code
+   * fixedClock}, all timestamps are relative to a fixed clock.
+   */
+  private static Supplier<ValueSource> valueSources(
+      Config config, long runSeed, long seed, boolean fixedClock) {
+    Clock clock =
+        config.isSeeded() || fixedClock
+            ? Clock.fixed(SEEDED_EPOCH, ZoneOffset.UTC)
+            : Clock.systemUTC();
+    ValuePool pool =
+        config.isValuePoolEnabled()
+            ? ValuePool.build(config.getValuePoolSize(), config.isValuePoolParallel(), runSeed)
+            : null;
+    AtomicLong created = new AtomicLong();
+    return () -> {
+      long sourceSeed = Seeds.mix(seed, created.getAndIncrement());
+      return pool != null
+          ? new PooledValueSource(pool, new SplittableRandom(sourceSeed), clock)
+          : new FakerValueSource(new Random(sourceSeed), clock);
+    };
+  }
+
   private static void runLoadTest(Config config) {
     MetricsManager metricsManager = MetricsManager.getInstance();
+    metricsManager.setIntendedLatencyReporting(config.isRateLimited());
+    metricsManager.setOperationTypes(config.getWorkload().getOperationTypes());
     metricsManager.resetStartTime();
+    logSeed(config);
+
+    // Worker i's keys, operations and update values come from streams seeded by (seed, i)
+    long seed = config.getSeed();
+    long recordCount = config.getTotalDocuments();
+    // INSERTs add keys from here on; the key choosers see them as they are handed out
+    AtomicLong insertKeys = new AtomicLong(recordCount);
+    KeyChooserFactory keyChoosers =
+        new KeyChooserFactory(
+            config.getKeyDistribution(),
+            insertKeys::get,
+            config.getZipfianConstant(),
+            config.getHotspotDataFraction(),
+            config.getHotspotOpnFraction(),
+            new SplittableRandom(Seeds.mix(seed, 1)));
+    logger.info(
+        "Choosing keys from [0, {}) with {} distribution",
+        recordCount,
+        config.getKeyDistribution());
+    SplittableRandom opRandom = new SplittableRandom(Seeds.mix(seed, 2));
+    Supplier<ValueSource> valueSources = valueSources(config, seed, Seeds.mix(seed, 3), false);
+    UpdateMix updateMix = new UpdateMix(config.getUpdateMix(), config.getUpdatePushSlice());
+    Set<OperationType> operationTypes = config.getWorkload().getOperationTypes();
+    if (operationTypes.contains(OperationType.UPDATE)
+        || operationTypes.contains(OperationType.READ_MODIFY_WRITE)) {
+      logger.info("Update mix: {}", config.getUpdateMix());
+      metricsManager.addReporter(updateMix);
+    }
+    Supplier<OperationGenerator> operationGenerators =
+        () ->
+            new OperationGenerator(
+                config.getWorkload(),
+                config.getTargetDocumentSize(),
+                config.isRawDocuments(),
+                valueSources.get(),
+                keyChoosers.create(),
+                opRandom.split(),
+                updateMix,
+                insertKeys);
+
+    try {
+      if (config.isAsyncEngine()) {
+        runAsyncEngine(config, operationGenerators);
+      } else {
+        runWorkers(config, operationGenerators);
+      }
+      metricsManager.printFinalReport();
+      exportTimeline(config);
+    } catch (InterruptedException e) {
+      logger.error("Load test interrupted", e);
+      Thread.currentThread().interrupt();
+    }
+  }
 
+  private static void runWorkers(Config config, Supplier<OperationGenerator> operationGenerators)
+      throws InterruptedException {
     try (MongoClient mongoClient =
-        MongoClients.create(MongoClientSettingsBuilder.build(config.getConnectionString()))) {
+        MongoClients.create(MongoClientSettingsBuilder.build(connectionString(config), config))) {
       MongoDatabase database = mongoClient.getDatabase(config.getDatabaseName());
       MongoCollection<Document> collection = database.getCollection(config.getCollectionName());
 
-      ExecutorService executor = Executors.newFixedThreadPool(config.getNumThreads());
+      if (config.isRateLimited()) {
+        logger.info("Open-loop mode: {} ops/sec per thread", config.getTargetOpsPerSecPerThread());
+      }
+
+      ReadBatcher<?> readBatcher = null;
+      if (config.isReadBatching()) {
+        readBatcher = newReadBatcher(config, collection);
+        MetricsManager.getInstance().addReporter(readBatcher);
+      }
+      WriteBatcher writeBatcher = null;
+      if (config.isWriteBatching()) {
+        logger.info(
+            "Batching updates: up to {} {} requests per unordered bulkWrite, flushed after {} ms",
+            config.getWriteBatchSize(),
+            config.isWriteBatchReplace() ? "replace" : "update",
+            config.getWriteBatchFlushMillis());
+        writeBatcher = new WriteBatcher(collection, config);
+        MetricsManager.getInstance().addReporter(writeBatcher);
+      }
+
+      ExecutorService executor = newWorkerExecutor(config);
 
       for (int i = 0; i < config.getNumThreads(); i++) {
         executor.submit(
             new OperationWorker(
                 collection,
                 config.getDocumentsPerThread(),
-                config.getWritePercentage(),
-                config.getTargetDocumentSize()));
+                config.getTargetOpsPerSecPerThread(),
+                operationGenerators.get(),
+                readBatcher,
+                writeBatcher));
       }
 
       executor.shutdown();
+      awaitWithProgress(config, executor);
+    }
+  }
 
-      // Start a progress logging thread
-      Thread progressLogger =
-          new Thread(
-              () -> {
-                while (!executor.isTerminated()) {
-                  metricsManager.printCurrentMetrics();
-                  try {
-                    Thread.sleep(10000); // Log every 10 seconds
-                  } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                  }
+  private static ReadBatcher<?> newReadBatcher(
+      Config config, MongoCollection<Document> collection) {
+    logger.info(
+        "Batching reads: up to {} keys per $in, {} scope, {} us window",
+        config.getReadBatchSize(),
+        config.isReadBatchShared() ? "shared" : "thread",
+        config.getReadBatchWindowMicros());
+    if (config.isRawDocuments()) {
+      return new ReadBatcher<>(
+          collection.withDocumentClass(RawBsonDocument.class),
+          document -> document.getNumber("index").longValue(),
+          config);
+    }
+    return new ReadBatcher<>(
+        collection, document -> document.get("index", Number.class).longValue(), config);
+  }
+
+  private static void runAsyncEngine(
+      Config config, Supplier<OperationGenerator> operationGenerators) throws InterruptedException {
+    if (config.isReadBatching()) {
+      logger.warn("READ_BATCH_SIZE only applies to ENGINE=sync; reading one key per operation");
+    }
+    if (config.isWriteBatching()) {
+      logger.warn("WRITE_BATCH_SIZE only applies to ENGINE=sync; writing one update per operation");
+    }
+    ConnectionPoolMetrics.getInstance().disableCheckoutWaits();
+    CommandLatencies.getInstance().disableOverhead();
+    try (AsyncOperationEngine engine =
+        new AsyncOperationEngine(connectionString(config), config, operationGenerators)) {
+      awaitWithProgress(config, engine.start());
+    }
+  }
+
+  /**
+   * One platform thread per loader/worker, or with THREAD_MODE=virtual one virtual thread each, so
+   * NUM_THREADS can reach tens of thousands of logical clients.
+   */
+  private static ExecutorService newWorkerExecutor(Config config) {
+    if (!config.isVirtualThreads()) {
+      return Executors.newFixedThreadPool(config.getNumThreads());
+    }
+    try {
+      // Looked up reflectively so the tree still builds and runs (platform mode) on Java 17
+      return (ExecutorService)
+          Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("THREAD_MODE=virtual requires Java 21 or later", e);
+    }
+  }
+
+  /** Waits for {@code executor} to terminate, printing metrics every report interval. */
+  private static void awaitWithProgress(Config config, ExecutorService executor)
+      throws InterruptedException {
+    // Start a progress logging thread
+    Thread progressLogger = startProgressLogger(config, executor);
+
+    executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    progressLogger.interrupt(); // Stop the progress logger
+    progressLogger.join();
+    MetricsManager.getInstance().printCurrentMetrics(); // Print final metrics
+  }
+
+  private static Thread startProgressLogger(Config config, ExecutorService executor) {
+    MetricsManager metricsManager = MetricsManager.getInstance();
+    long intervalMillis = TimeUnit.SECONDS.toMillis(config.getReportIntervalSeconds());
+    Thread progressLogger =
+        new Thread(
+            () -> {
+              while (!executor.isTerminated()) {
+                try {
+                  Thread.sleep(intervalMillis);
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                  break;
                 }
-              });
-      progressLogger.start();
+                metricsManager.printCurrentMetrics();
+              }
+            });
+    progressLogger.start();
+    return progressLogger;
+  }
 
-      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-      progressLogger.interrupt(); // Stop the progress logger
-      progressLogger.join();
-      metricsManager.printCurrentMetrics(); // Print final metrics
-      metricsManager.printFinalReport();
-    } catch (InterruptedException e) {
-      logger.error("Load test interrupted", e);
-      Thread.currentThread().interrupt();
+  private static void logSeed(Config config) {
+    if (config.isSeeded()) {
+      logger.info("Generating data from SEED {}", config.getSeed());
+    } else {
+      logger.info("Generating data from random seed {} (set SEED to reproduce)", config.getSeed());
+    }
+  }
+
+  private static void exportTimeline(Config config) {
+    if (config.getMetricsTimelineFile() != null) {
+      MetricsManager.getInstance().exportTimeline(config.getMetricsTimelineFile());
+    }
+    if (config.getServerHealthFile() != null) {
+      ServerHealth.getInstance().export(config.getServerHealthFile());
     }
   }
 
@@ -211,11 +612,12 @@ public class Main {
 
   private static void runStressTest(Config config) {
     try (MongoClient mongoClient =
-        MongoClients.create(MongoClientSettingsBuilder.build(config.getConnectionString()))) {
+        MongoClients.create(MongoClientSettingsBuilder.build(connectionString(config), config))) {
       MongoDatabase database = mongoClient.getDatabase(config.getDatabaseName());
       MongoCollection<Document> collection = database.getCollection(config.getCollectionName());
 
-      ExecutorService executor = Executors.newFixedThreadPool(config.getNumThreads());
+      // With THREAD_MODE=virtual the CPU tasks share the carrier threads, one per core
+      ExecutorService executor = newWorkerExecutor(config);
       for (int i = 0; i < config.getNumThreads(); i++) {
         executor.submit(new CPUIntensiveTask());
       }
@@ -1,18 +1,28 @@
 package com.example;
 
+import com.example.ThreadCounters.Counter;
 import io.opentelemetry.api.OpenTelemetry;
 import io.opentelemetry.api.common.Attributes;
-import io.opentelemetry.api.metrics.LongCounter;
 import io.opentelemetry.api.metrics.Meter;
 import io.opentelemetry.api.metrics.ObservableDoubleGauge;
+import io.opentelemetry.api.metrics.ObservableLongCounter;
 import io.opentelemetry.exporter.logging.LoggingMetricExporter;
 import io.opentelemetry.sdk.OpenTelemetrySdk;
 import io.opentelemetry.sdk.metrics.SdkMeterProvider;
 import io.opentelemetry.sdk.metrics.export.PeriodicMetricReader;
 import io.opentelemetry.sdk.resources.Resource;
 import io.opentelemetry.semconv.resource.attributes.ResourceAttributes;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -21,17 +31,37 @@ public class MetricsManager {
   private static final MetricsManager INSTANCE = new MetricsManager();
   private final OpenTelemetry openTelemetry;
   private final Meter meter;
-  private final LongCounter totalOperations;
-  private final LongCounter readOperations;
-  private final LongCounter writeOperations;
-  private final LongCounter failedOperations;
-  private final AtomicReference<Double> latestReadLatency = new AtomicReference<>(0.0);
-  private final AtomicReference<Double> latestWriteLatency = new AtomicReference<>(0.0);
+  private final Map<OperationType, LatencyHistogram> latencies = new EnumMap<>(OperationType.class);
+  // Measured from the intended start time when running open-loop at a target rate
+  private final Map<OperationType, LatencyHistogram> intendedLatencies =
+      new EnumMap<>(OperationType.class);
+  private volatile boolean intendedLatencyReporting = false;
+  // Operation types in the report; READ and UPDATE are always listed
+  private volatile Set<OperationType> reportedTypes =
+      EnumSet.of(OperationType.READ, OperationType.UPDATE);
   private final AtomicLong startTime = new AtomicLong(System.currentTimeMillis());
-  private final AtomicLong totalOperationsCount = new AtomicLong(0);
-  private final AtomicLong readOperationsCount = new AtomicLong(0);
-  private final AtomicLong writeOperationsCount = new AtomicLong(0);
-  private final AtomicLong failedOperationsCount = new AtomicLong(0);
+  // Every live thread that records an operation owns one ThreadCounters; readers sum over all of
+  // them and fold the counts of ended threads into retiredCounts, so the queue does not keep one
+  // entry per short-lived (virtual) thread
+  private final Queue<ThreadCounters> threadCounters = new ConcurrentLinkedQueue<>();
+  private final long[] retiredCounts = new long[Counter.values().length];
+  private final ThreadLocal<ThreadCounters> localCounters =
+      ThreadLocal.withInitial(
+          () -> {
+            ThreadCounters counters = new ThreadCounters();
+            threadCounters.add(counters);
+            return counters;
+          });
+  // Sums captured by resetStartTime; reported counts are relative to these
+  private volatile long[] counterBaseline = new long[Counter.values().length];
+  // Per-interval history of the run, appended by the reporting thread
+  private final List<IntervalSnapshot> timeline = new ArrayList<>();
+  private long lastSnapshotTime = startTime.get();
+  private long lastSnapshotOperations;
+  private long lastSnapshotErrors;
+  private final List<MetricsReporter> reporters = new CopyOnWriteArrayList<>();
+  private final FailoverAnalyzer failoverAnalyzer = FailoverAnalyzer.getInstance();
+  private final FlightRecorder flightRecorder = FlightRecorder.getInstance();
 
   private MetricsManager() {
     Resource resource =
@@ -52,40 +82,50 @@ public class MetricsManager {
 
     meter = openTelemetry.getMeter("com.example.mongodb-java-app");
 
-    totalOperations =
+    for (OperationType type : OperationType.values()) {
+      latencies.put(type, new LatencyHistogram());
+      intendedLatencies.put(type, new LatencyHistogram());
+    }
+
+    ObservableLongCounter totalOperations =
         meter
             .counterBuilder("total_operations")
             .setDescription("Total number of operations")
-            .build();
+            .buildWithCallback(measurement -> measurement.record(sum(Counter.TOTAL)));
 
-    readOperations =
-        meter.counterBuilder("read_operations").setDescription("Number of read operations").build();
+    ObservableLongCounter readOperations =
+        meter
+            .counterBuilder("read_operations")
+            .setDescription("Number of read operations")
+            .buildWithCallback(measurement -> measurement.record(sum(Counter.READ)));
 
-    writeOperations =
+    ObservableLongCounter writeOperations =
         meter
             .counterBuilder("write_operations")
             .setDescription("Number of write operations")
-            .build();
+            .buildWithCallback(measurement -> measurement.record(sum(Counter.WRITE)));
 
-    failedOperations =
+    ObservableLongCounter failedOperations =
         meter
             .counterBuilder("failed_operations")
             .setDescription("Number of failed operations")
-            .build();
+            .buildWithCallback(measurement -> measurement.record(sum(Counter.FAILED)));
 
     ObservableDoubleGauge readLatency =
         meter
             .gaugeBuilder("read_latency")
-            .setDescription("Read operation latency")
+            .setDescription("Mean read operation latency over the last reporting interval")
             .setUnit("ms")
-            .buildWithCallback(measurement -> measurement.record(latestReadLatency.get()));
+            .buildWithCallback(
+                measurement -> measurement.record(lastIntervalMeanMs(OperationType.READ)));
 
     ObservableDoubleGauge writeLatency =
         meter
             .gaugeBuilder("write_latency")
-            .setDescription("Write operation latency")
+            .setDescription("Mean write operation latency over the last reporting interval")
             .setUnit("ms")
-            .buildWithCallback(measurement -> measurement.record(latestWriteLatency.get()));
+            .buildWithCallback(
+                measurement -> measurement.record(lastIntervalMeanMs(OperationType.UPDATE)));
 
     ObservableDoubleGauge throughput =
         meter
@@ -96,7 +136,7 @@ public class MetricsManager {
                 measurement -> {
                   long elapsedSeconds = (System.currentTimeMillis() - startTime.get()) / 1000;
                   if (elapsedSeconds > 0) {
-                    measurement.record((double) totalOperationsCount.get() / elapsedSeconds);
+                    measurement.record((double) count(Counter.TOTAL) / elapsedSeconds);
                   }
                 });
   }
@@ -105,99 +145,281 @@ public class MetricsManager {
     return INSTANCE;
   }
 
-  public void printCurrentMetrics() {
-    long currentTime = System.currentTimeMillis();
-    long elapsedSeconds = (currentTime - startTime.get()) / 1000;
-    long totalOps = totalOperationsCount.get();
-    double currentOpsPerSec = elapsedSeconds > 0 ? (double) totalOps / elapsedSeconds : 0;
+  public synchronized void printCurrentMetrics() {
+    IntervalSnapshot snapshot = takeSnapshot();
 
-    // YCSB format: current time, elapsed time, operations, current throughput
+    // YCSB format: current time, elapsed time, operations, throughput over the last interval
+    long currentTime = snapshot.getTimestampMillis();
     System.out.printf(
         "%tF %tT:%tL %d sec: %d operations; %.1f current ops/sec; ",
-        currentTime, currentTime, currentTime, elapsedSeconds, totalOps, currentOpsPerSec);
-
-    // Add operation stats in YCSB format
-    System.out.printf(
-        "[READ: Count=%d, Max=%.0f, Min=%.0f, Avg=%.2f] ",
-        readOperationsCount.get(),
-        latestReadLatency.get() * 1000, // convert ms to us
-        latestReadLatency.get() * 1000,
-        latestReadLatency.get() * 1000);
-
-    System.out.printf(
-        "[UPDATE: Count=%d, Max=%.0f, Min=%.0f, Avg=%.2f]\n",
-        writeOperationsCount.get(),
-        latestWriteLatency.get() * 1000,
-        latestWriteLatency.get() * 1000,
-        latestWriteLatency.get() * 1000);
+        currentTime,
+        currentTime,
+        currentTime,
+        (long) snapshot.getElapsedSeconds(),
+        count(Counter.TOTAL),
+        snapshot.getThroughput());
+    if (snapshot.getErrors() > 0) {
+      System.out.printf("%d errors; ", snapshot.getErrors());
+    }
+
+    // Add per-interval operation stats in YCSB format (latencies in us)
+    StringBuilder stats = new StringBuilder();
+    for (OperationType type : snapshot.getLatencies().keySet()) {
+      stats.append(formatIntervalStats(type.getLabel(), snapshot.getLatencies().get(type)));
+      LatencySummary intended = snapshot.getIntendedLatencies().get(type);
+      if (intended != null) {
+        stats.append(' ').append(formatIntervalStats(intendedLabel(type), intended));
+      }
+      stats.append(' ');
+    }
+    System.out.println(stats.toString().trim());
+    for (MetricsReporter reporter : reporters) {
+      String line = reporter.intervalReport(snapshot.getIntervalSeconds());
+      if (line != null) {
+        System.out.println(line);
+      }
+    }
 
     // Add cluster state information
     ClusterState clusterState = ClusterState.getInstance();
     logger.debug("Cluster State: {}", clusterState);
   }
 
+  /** Closes the current reporting interval and appends it to the run timeline. */
+  private synchronized IntervalSnapshot takeSnapshot() {
+    long now = System.currentTimeMillis();
+    long operations = count(Counter.TOTAL);
+    long errors = count(Counter.FAILED);
+
+    Map<OperationType, LatencySummary> intervalLatencies = new EnumMap<>(OperationType.class);
+    Map<OperationType, LatencySummary> intervalIntendedLatencies =
+        new EnumMap<>(OperationType.class);
+    for (OperationType type : OperationType.values()) {
+      LatencySummary latency = LatencySummary.of(latencies.get(type).sampleInterval());
+      LatencySummary intended = LatencySummary.of(intendedLatencies.get(type).sampleInterval());
+      if (reportedTypes.contains(type)) {
+        intervalLatencies.put(type, latency);
+        if (intendedLatencyReporting) {
+          intervalIntendedLatencies.put(type, intended);
+        }
+      }
+    }
+
+    IntervalSnapshot snapshot =
+        new IntervalSnapshot(
+            now,
+            (now - startTime.get()) / 1000.0,
+            (now - lastSnapshotTime) / 1000.0,
+            operations - lastSnapshotOperations,
+            errors - lastSnapshotErrors,
+            intervalLatencies,
+            intervalIntendedLatencies);
+    timeline.add(snapshot);
+    lastSnapshotTime = now;
+    lastSnapshotOperations = operations;
+    lastSnapshotErrors = errors;
+    return snapshot;
+  }
+
+  public synchronized List<IntervalSnapshot> getTimeline() {
+    return new ArrayList<>(timeline);
+  }
+
+  public void exportTimeline(String file) {
+    TimelineExporter.export(getTimeline(), file);
+  }
+
   // Add a new method for final report in YCSB format
-  public void printFinalReport() {
+  public synchronized void printFinalReport() {
     long totalTime = System.currentTimeMillis() - startTime.get();
-    double overallThroughput = (double) totalOperationsCount.get() * 1000 / totalTime;
+    double overallThroughput = (double) count(Counter.TOTAL) * 1000 / totalTime;
 
     System.out.println("[OVERALL], RunTime(ms), " + totalTime);
     System.out.println(
         "[OVERALL], Throughput(ops/sec), " + String.format("%.2f", overallThroughput));
 
-    // Print operation stats
-    double readAvgLatency = latestReadLatency.get() * 1000; // convert to us
-    System.out.println("[READ], Operations, " + readOperationsCount.get());
-    System.out.println("[READ], AverageLatency(us), " + String.format("%.2f", readAvgLatency));
+    for (OperationType type : reportedTypes) {
+      printOperationReport(type, count(counterFor(type)));
+    }
+    reporters.forEach(MetricsReporter::printFinalReport);
+  }
+
+  /** Adds the workload's operation types to the report, next to READ and UPDATE. */
+  public void setOperationTypes(Set<OperationType> types) {
+    Set<OperationType> reported = EnumSet.of(OperationType.READ, OperationType.UPDATE);
+    reported.addAll(types);
+    reportedTypes = reported;
+  }
+
+  public void addReporter(MetricsReporter reporter) {
+    reporters.add(reporter);
+  }
+
+  public void removeReporter(MetricsReporter reporter) {
+    reporters.remove(reporter);
+  }
+
+  private void printOperationReport(OperationType type, long operations) {
+    printLatencyReport(
+        type.getLabel(), operations, LatencySummary.of(latencies.get(type).getCumulative()));
+    if (intendedLatencyReporting) {
+      printLatencyReport(
+          intendedLabel(type),
+          operations,
+          LatencySummary.of(intendedLatencies.get(type).getCumulative()));
+    }
+  }
+
+  static void printLatencyReport(String name, long operations, LatencySummary latency) {
+    String label = "[" + name + "], ";
+
+    System.out.println(label + "Operations, " + operations);
+    System.out.println(label + "AverageLatency(us), " + String.format("%.2f", latency.getMean()));
+    System.out.println(label + "MinLatency(us), " + latency.getMin());
+    System.out.println(label + "MaxLatency(us), " + latency.getMax());
+    System.out.println(label + "50thPercentileLatency(us), " + latency.getP50());
+    System.out.println(label + "95thPercentileLatency(us), " + latency.getP95());
+    System.out.println(label + "99thPercentileLatency(us), " + latency.getP99());
+    System.out.println(label + "99.9PercentileLatency(us), " + latency.getP999());
+    System.out.println(label + "99.99PercentileLatency(us), " + latency.getP9999());
+  }
+
+  // YCSB names the coordinated-omission corrected series "Intended-<OP>"
+  static String intendedLabel(OperationType type) {
+    return "Intended-" + type.getLabel();
+  }
+
+  static String formatIntervalStats(String name, LatencySummary latency) {
+    return String.format(
+        "[%s: Count=%d, Max=%d, Min=%d, Avg=%.2f, 50=%d, 95=%d, 99=%d, 99.9=%d, 99.99=%d]",
+        name,
+        latency.getCount(),
+        latency.getMax(),
+        latency.getMin(),
+        latency.getMean(),
+        latency.getP50(),
+        latency.getP95(),
+        latency.getP99(),
+        latency.getP999(),
+        latency.getP9999());
+  }
 
-    double writeAvgLatency = latestWriteLatency.get() * 1000; // convert to us
-    System.out.println("[UPDATE], Operations, " + writeOperationsCount.get());
-    System.out.println("[UPDATE], AverageLatency(us), " + String.format("%.2f", writeAvgLatency));
+  private double lastIntervalMeanMs(OperationType type) {
+    return latencies.get(type).getLastInterval().getMean() / 1000;
   }
 
   public void incrementTotalOperations() {
-    totalOperations.add(1);
-    totalOperationsCount.incrementAndGet();
+    localCounters.get().add(Counter.TOTAL, 1);
   }
 
   public void addTotalOperations(int count) {
-    totalOperations.add(count);
-    totalOperationsCount.addAndGet(count);
+    localCounters.get().add(Counter.TOTAL, count);
   }
 
   public void incrementReadOperations() {
-    readOperations.add(1);
-    readOperationsCount.incrementAndGet();
+    localCounters.get().add(Counter.READ, 1);
+  }
+
+  public void addReadOperations(int count) {
+    localCounters.get().add(Counter.READ, count);
   }
 
   public void incrementWriteOperations() {
-    writeOperations.add(1);
-    writeOperationsCount.incrementAndGet();
+    localCounters.get().add(Counter.WRITE, 1);
   }
 
   public void addWriteOperations(int count) {
-    writeOperations.add(count);
-    writeOperationsCount.addAndGet(count);
+    localCounters.get().add(Counter.WRITE, count);
+  }
+
+  /** Counts one completed operation of {@code type}, as the increment*Operations methods do. */
+  public void incrementOperations(OperationType type) {
+    localCounters.get().add(counterFor(type), 1);
+  }
+
+  private static Counter counterFor(OperationType type) {
+    switch (type) {
+      case READ:
+        return Counter.READ;
+      case UPDATE:
+        return Counter.WRITE;
+      case INSERT:
+        return Counter.INSERT;
+      case SCAN:
+        return Counter.SCAN;
+      case READ_MODIFY_WRITE:
+        return Counter.READ_MODIFY_WRITE;
+      case DELETE:
+        return Counter.DELETE;
+      default:
+        throw new IllegalArgumentException("No counter for " + type);
+    }
   }
 
   public void incrementFailedOperations() {
-    failedOperations.add(1);
-    failedOperationsCount.incrementAndGet();
+    localCounters.get().add(Counter.FAILED, 1);
+    failoverAnalyzer.addFailedOperations(1);
+  }
+
+  public void addFailedOperations(int count) {
+    localCounters.get().add(Counter.FAILED, count);
+    failoverAnalyzer.addFailedOperations(count);
+  }
+
+  public long getTotalOperations() {
+    return count(Counter.TOTAL);
+  }
+
+  // Counts since the last resetStartTime
+  private long count(Counter counter) {
+    return sum(counter) - counterBaseline[counter.ordinal()];
+  }
+
+  // Monotonic counts over the whole process, as exported to OpenTelemetry
+  private long sum(Counter counter) {
+    // Folding and summing under one lock, so no reader counts an ended thread twice
+    synchronized (retiredCounts) {
+      long total = 0;
+      for (Iterator<ThreadCounters> iterator = threadCounters.iterator(); iterator.hasNext(); ) {
+        ThreadCounters counters = iterator.next();
+        if (counters.isRetired()) {
+          counters.addTo(retiredCounts);
+          iterator.remove();
+        } else {
+          total += counters.get(counter);
+        }
+      }
+      return total + retiredCounts[counter.ordinal()];
+    }
+  }
+
+  public void recordLatency(OperationType type, long latencyNanos) {
+    latencies.get(type).recordNanos(latencyNanos);
+    failoverAnalyzer.recordLatency(latencyNanos);
+    flightRecorder.operationCompleted(latencyNanos);
   }
 
-  public void recordReadLatency(double latencyMs) {
-    latestReadLatency.set(latencyMs);
+  public void recordIntendedLatency(OperationType type, long latencyNanos) {
+    intendedLatencies.get(type).recordNanos(latencyNanos);
   }
 
-  public void recordWriteLatency(double latencyMs) {
-    latestWriteLatency.set(latencyMs);
+  /** Reports intended-start latencies next to the measured ones (open-loop runs). */
+  public void setIntendedLatencyReporting(boolean enabled) {
+    intendedLatencyReporting = enabled;
   }
 
-  public void resetStartTime() {
+  public synchronized void resetStartTime() {
     startTime.set(System.currentTimeMillis());
-    totalOperationsCount.set(0);
-    readOperationsCount.set(0);
-    writeOperationsCount.set(0);
-    failedOperationsCount.set(0);
+    long[] baseline = new long[Counter.values().length];
+    for (Counter counter : Counter.values()) {
+      baseline[counter.ordinal()] = sum(counter);
+    }
+    counterBaseline = baseline;
+    latencies.values().forEach(LatencyHistogram::reset);
+    intendedLatencies.values().forEach(LatencyHistogram::reset);
+    timeline.clear();
+    lastSnapshotTime = startTime.get();
+    lastSnapshotOperations = 0;
+    lastSnapshotErrors = 0;
   }
 }
@@ -0,0 +1,19 @@
+package com.example;
+
+/**
+ * Additional metrics printed alongside MetricsManager's own output. Implementations are called from
+ * the reporting thread only.
+ */
+public interface MetricsReporter {
+  /**
+   * Returns a line describing the interval that just closed, or null to print nothing.
+   *
+   * @param intervalSeconds length of that interval
+   */
+  default String intervalReport(double intervalSeconds) {
+    return null;
+  }
+
+  /** Prints YCSB-style "[SECTION], Metric, value" lines at the end of the run. */
+  default void printFinalReport() {}
+}
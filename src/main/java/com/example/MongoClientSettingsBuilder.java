@@ -10,10 +10,16 @@ import com.mongodb.MongoClientSettings;
 import java.util.concurrent.TimeUnit;
 
 public class MongoClientSettingsBuilder {
-  public static MongoClientSettings build(String connectionString) {
+  public static MongoClientSettings build(String connectionString, Config config) {
     return MongoClientSettings.builder()
         .applyConnectionString(new ConnectionString(connectionString))
-        .applyToClusterSettings(builder -> builder.addClusterListener(new CustomClusterListener()))
+        .applyToClusterSettings(
+            builder -> {
+              builder.addClusterListener(new CustomClusterListener());
+              if (config.isRttAwareReads()) {
+                builder.serverSelector(new RttAwareServerSelector(ServerHealth.getInstance()));
+              }
+            })
         .applyToServerSettings(
             builder ->
                 builder
@@ -23,8 +29,11 @@ public class MongoClientSettingsBuilder {
             builder -> {
               builder.addConnectionPoolListener(new CustomConnectionPoolListener());
               builder
-                  .maxSize(100) // Increase max connections
-                  .minSize(20) // Set min connections
+                  .maxSize(config.getConnectionPoolMaxSize()) // Increase max connections
+                  .minSize(
+                      Math.min(
+                          config.getConnectionPoolMinSize(),
+                          config.getConnectionPoolMaxSize())) // Set min connections
                   .maxWaitTime(30000, TimeUnit.MILLISECONDS) // Max wait time for a connection
                   .maxConnectionLifeTime(1, TimeUnit.HOURS); // Max connection lifetime
             })
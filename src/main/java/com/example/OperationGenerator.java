@@ -0,0 +1,106 @@
+package com.example;
+
+import com.example.keys.KeyChooser;
+import com.mongodb.MongoClientSettings;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentWrapper;
+import org.bson.BsonInt64;
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.conversions.Bson;
+
+/**
+ * Decides what a run-phase worker does next and builds the requests for it. Both the sync {@link
+ * OperationWorker} and the {@link AsyncOperationEngine} use it, so the two engines run exactly the
+ * same workload. One instance per worker; not thread-safe.
+ */
+public class OperationGenerator {
+  private static final Codec<Document> DOCUMENT_CODEC =
+      MongoClientSettings.getDefaultCodecRegistry().get(Document.class);
+
+  private final Workload workload;
+  private final int targetDocumentSize;
+  private final ValueSource values;
+  // Both owned by this worker, so op and key selection never contend with other workers
+  private final KeyChooser keyChooser;
+  private final SplittableRandom random;
+  // Shared by all workers: the next key to insert, which is also the current record count
+  private final AtomicLong insertKeys;
+  // Set when documents are generated and read as raw BSON, bypassing the Document codec
+  private final RawDocumentGenerator rawGenerator;
+  private final UpdateGenerator updates;
+
+  public OperationGenerator(
+      Workload workload,
+      int targetDocumentSize,
+      boolean rawDocuments,
+      ValueSource values,
+      KeyChooser keyChooser,
+      SplittableRandom random,
+      UpdateMix updateMix,
+      AtomicLong insertKeys) {
+    this.workload = workload;
+    this.targetDocumentSize = targetDocumentSize;
+    this.values = values;
+    this.keyChooser = keyChooser;
+    this.random = random;
+    this.insertKeys = insertKeys;
+    this.rawGenerator = rawDocuments ? new RawDocumentGenerator(values, targetDocumentSize) : null;
+    this.updates = new UpdateGenerator(updateMix, values, targetDocumentSize, rawDocuments, random);
+  }
+
+  public boolean isRawDocuments() {
+    return rawGenerator != null;
+  }
+
+  public OperationType nextOperation() {
+    return workload.next(random);
+  }
+
+  public long nextKey() {
+    return keyChooser.nextKey();
+  }
+
+  /** A key past the loaded range that no other worker inserts. */
+  public long nextInsertKey() {
+    return insertKeys.getAndIncrement();
+  }
+
+  /** Number of documents a SCAN reads, uniform in [1, MAX_SCAN_LENGTH]. */
+  public int nextScanLength() {
+    return 1 + random.nextInt(workload.getMaxScanLength());
+  }
+
+  public Bson filter(long key) {
+    return rawGenerator != null
+        ? new BsonDocument("index", new BsonInt64(key))
+        : new Document("index", key);
+  }
+
+  /** Documents with an index of at least {@code key}; scanned in index order. */
+  public Bson scanFilter(long key) {
+    return rawGenerator != null
+        ? new BsonDocument("index", new BsonDocument("$gte", new BsonInt64(key)))
+        : new Document("index", new Document("$gte", key));
+  }
+
+  /** An update of {@code key}, in a shape drawn from the update mix. */
+  public Bson update(long key) {
+    return updates.generate(key);
+  }
+
+  /**
+   * A freshly generated full document for {@code key}, to insert or to replace the stored one.
+   * Document-mode output is wrapped rather than converted, so it is encoded once, straight from the
+   * {@code Document}.
+   */
+  public BsonDocument document(long key) {
+    if (rawGenerator != null) {
+      return rawGenerator.generate(key);
+    }
+    return new BsonDocumentWrapper<>(
+        DocumentGenerator.generateRichDocument(values, key, targetDocumentSize), DOCUMENT_CODEC);
+  }
+}
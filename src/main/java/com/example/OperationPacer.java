@@ -0,0 +1,36 @@
+package com.example;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop schedule for one worker thread. Operation n is intended to start at {@code start + n *
+ * interval}, independent of how long earlier operations took, so a slow server builds up a backlog
+ * instead of quietly lowering the offered load.
+ */
+public class OperationPacer {
+  private final long intervalNanos;
+  private final long startNanos;
+  private long scheduled;
+
+  public OperationPacer(double opsPerSecond) {
+    this.intervalNanos = Math.max(1, (long) (1_000_000_000L / opsPerSecond));
+    // Spread threads over the first interval so they don't all fire on the same tick
+    this.startNanos = System.nanoTime() + ThreadLocalRandom.current().nextLong(intervalNanos);
+  }
+
+  /** Blocks until the next intended start time and returns it (System.nanoTime based). */
+  public long awaitNext() {
+    long intendedStart = next();
+    long now;
+    while ((now = System.nanoTime()) < intendedStart) {
+      LockSupport.parkNanos(intendedStart - now);
+    }
+    return intendedStart;
+  }
+
+  /** Returns the next intended start time without waiting for it. */
+  public long next() {
+    return startNanos + scheduled++ * intervalNanos;
+  }
+}
@@ -0,0 +1,21 @@
+package com.example;
+
+public enum OperationType {
+  READ("READ"),
+  UPDATE("UPDATE"),
+  INSERT("INSERT"),
+  SCAN("SCAN"),
+  READ_MODIFY_WRITE("READ-MODIFY-WRITE"),
+  DELETE("DELETE");
+
+  private final String label;
+
+  OperationType(String label) {
+    this.label = label;
+  }
+
+  // Name used in the YCSB-style report lines, e.g. [READ]
+  public String getLabel() {
+    return label;
+  }
+}
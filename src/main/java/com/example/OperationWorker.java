@@ -2,45 +2,118 @@ package com.example;
 
 import com.mongodb.MongoException;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Sorts;
 import com.mongodb.client.model.UpdateOptions;
-import com.mongodb.client.model.Updates;
-import java.util.Random;
+import com.mongodb.client.model.WriteModel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import org.bson.BsonDocument;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
 import org.bson.conversions.Bson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class OperationWorker implements Runnable {
   private static final Logger logger = LoggerFactory.getLogger(OperationWorker.class);
-  private static final Random RANDOM = new Random();
+  private static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
+  private static final Bson BY_INDEX = Sorts.ascending("index");
   private final MongoCollection<Document> collection;
-  private final int operationsCount;
-  private final int writePercentage;
+  private final long operationsCount;
+  private final CommandLatencies commandLatencies;
   private final MetricsManager metricsManager;
-  private final int targetDocumentSize;
+  // Per-thread target rate; 0 runs closed-loop, one operation right after another
+  private final double targetOpsPerSec;
+  private final OperationGenerator operations;
+  // Set when documents are read as raw BSON, bypassing the Document codec
+  private final MongoCollection<RawBsonDocument> rawCollection;
+  // rawCollection if set, otherwise collection
+  private final MongoCollection<?> readCollection;
+  // Inserts whole generated documents, raw or wrapped
+  private final MongoCollection<BsonDocument> documentCollection;
+  // Set when reads are coalesced into $in multi-gets
+  private final ReadBatcher<?> readBatcher;
+  // Thread scope: reads collected so far, with when each was requested
+  private final List<Long> pendingReads;
+  private final long[] readRequested;
+  private final long[] readIntended;
+  // Set when updates are grouped into bulkWrite calls, collected here in the same way
+  private final WriteBatcher writeBatcher;
+  private final List<WriteModel<BsonDocument>> pendingWrites;
+  private final long[] writeRequested;
+  private final long[] writeIntended;
 
   public OperationWorker(
       MongoCollection<Document> collection,
-      int operationsCount,
-      int writePercentage,
-      int targetDocumentSize) {
+      long operationsCount,
+      double targetOpsPerSec,
+      OperationGenerator operations,
+      ReadBatcher<?> readBatcher,
+      WriteBatcher writeBatcher) {
     this.collection = collection;
     this.operationsCount = operationsCount;
-    this.writePercentage = writePercentage;
     this.metricsManager = MetricsManager.getInstance();
-    this.targetDocumentSize = targetDocumentSize;
+    this.commandLatencies = CommandLatencies.getInstance();
+    this.targetOpsPerSec = targetOpsPerSec;
+    this.operations = operations;
+    this.rawCollection =
+        operations.isRawDocuments() ? collection.withDocumentClass(RawBsonDocument.class) : null;
+    this.readCollection = rawCollection != null ? rawCollection : collection;
+    this.documentCollection = collection.withDocumentClass(BsonDocument.class);
+    this.readBatcher = readBatcher;
+    boolean batchOwnReads = readBatcher != null && !readBatcher.isShared();
+    int batchSize = batchOwnReads ? readBatcher.getBatchSize() : 0;
+    this.pendingReads = batchOwnReads ? new ArrayList<>(batchSize) : null;
+    this.readRequested = new long[batchSize];
+    this.readIntended = new long[batchSize];
+    this.writeBatcher = writeBatcher;
+    int writeBatchSize = writeBatcher != null ? writeBatcher.getBatchSize() : 0;
+    this.pendingWrites = writeBatcher != null ? new ArrayList<>(writeBatchSize) : null;
+    this.writeRequested = new long[writeBatchSize];
+    this.writeIntended = new long[writeBatchSize];
   }
 
   @Override
   public void run() {
-    for (int i = 0; i < operationsCount; i++) {
+    OperationPacer pacer = targetOpsPerSec > 0 ? new OperationPacer(targetOpsPerSec) : null;
+    for (long i = 0; i < operationsCount; i++) {
       try {
-        if (RANDOM.nextInt(100) < writePercentage) {
-          performWrite();
+        long intendedStart = pacer != null ? pacer.awaitNext() : System.nanoTime();
+        if (pendingReads != null
+            && !pendingReads.isEmpty()
+            && System.nanoTime() - readRequested[0] >= readBatcher.getWindowNanos()) {
+          flushReads();
+        }
+        if (pendingWrites != null
+            && !pendingWrites.isEmpty()
+            && System.nanoTime() - writeRequested[0] >= writeBatcher.getFlushIntervalNanos()) {
+          flushWrites();
+        }
+        OperationType type = operations.nextOperation();
+        if (type == OperationType.UPDATE && pendingWrites != null) {
+          // Counted once its batch has been written
+          queueWrite(intendedStart);
+        } else if (type == OperationType.READ && pendingReads != null) {
+          // Counted once its batch has been read
+          queueRead(intendedStart);
+        } else if (type == OperationType.READ && readBatcher != null) {
+          // Another caller may send the batch, so its command time is not on this thread; like
+          // queued reads and writes, shared reads are left out of the client overhead
+          perform(type, intendedStart);
+          metricsManager.incrementTotalOperations();
         } else {
-          performRead();
+          commandLatencies.begin(type);
+          boolean succeeded = false;
+          try {
+            perform(type, intendedStart);
+            succeeded = true;
+          } finally {
+            commandLatencies.end(succeeded);
+          }
+          metricsManager.incrementTotalOperations();
         }
-        metricsManager.incrementTotalOperations();
 
         if (i % 1000 == 0 && i > 0) {
           logger.debug(
@@ -54,39 +127,219 @@ public class OperationWorker implements Runnable {
         metricsManager.incrementFailedOperations();
       }
     }
+    if (pendingReads != null) {
+      flushReads();
+    }
+    if (pendingWrites != null) {
+      flushWrites();
+    }
   }
 
-  private void performWrite() {
-    int randomId = RANDOM.nextInt(operationsCount);
-    Document updateDoc = DocumentGenerator.generateRichDocument(randomId, targetDocumentSize);
-    Bson filter = new Document("index", randomId);
-    Bson update =
-        Updates.combine(
-            Updates.set("timestamp", updateDoc.getLong("timestamp")),
-            Updates.set("user", updateDoc.get("user")),
-            Updates.set("order", updateDoc.get("order")),
-            Updates.set("metadata", updateDoc.get("metadata")));
-    UpdateOptions options = new UpdateOptions().upsert(true);
+  private void perform(OperationType type, long intendedStart) {
+    switch (type) {
+      case READ:
+        if (readBatcher != null) {
+          performSharedRead(intendedStart);
+        } else {
+          performRead(intendedStart);
+        }
+        break;
+      case UPDATE:
+        performWrite(intendedStart);
+        break;
+      case INSERT:
+        performInsert(intendedStart);
+        break;
+      case SCAN:
+        performScan(intendedStart);
+        break;
+      case READ_MODIFY_WRITE:
+        performReadModifyWrite(intendedStart);
+        break;
+      case DELETE:
+        performDelete(intendedStart);
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported operation " + type);
+    }
+  }
+
+  private void performWrite(long intendedStart) {
+    long randomId = operations.nextKey();
+    Bson filter = operations.filter(randomId);
+    Bson update = operations.update(randomId);
 
     long startTime = System.nanoTime();
-    collection.updateOne(filter, update, options);
+    collection.updateOne(filter, update, UPSERT);
     long endTime = System.nanoTime();
-    double latencyMs = (endTime - startTime) / 1_000_000.0;
-    metricsManager.recordWriteLatency(latencyMs);
+    recordLatency(OperationType.UPDATE, intendedStart, startTime, endTime);
     metricsManager.incrementWriteOperations();
     logger.debug("Updated document with index: {}", randomId);
   }
 
-  private void performRead() {
-    int randomId = RANDOM.nextInt(operationsCount);
+  private void performInsert(long intendedStart) {
+    long key = operations.nextInsertKey();
+    BsonDocument document = operations.document(key);
+
     long startTime = System.nanoTime();
-    Document result = collection.find(new Document("index", randomId)).first();
+    documentCollection.insertOne(document);
     long endTime = System.nanoTime();
-    double latencyMs = (endTime - startTime) / 1_000_000.0;
-    metricsManager.recordReadLatency(latencyMs);
+    recordLatency(OperationType.INSERT, intendedStart, startTime, endTime);
+    metricsManager.incrementOperations(OperationType.INSERT);
+    logger.debug("Inserted document with index: {}", key);
+  }
+
+  private void performScan(long intendedStart) {
+    long startKey = operations.nextKey();
+    int length = operations.nextScanLength();
+    Bson filter = operations.scanFilter(startKey);
+
+    long startTime = System.nanoTime();
+    int scanned = 0;
+    for (Object document :
+        readCollection.find(filter).sort(BY_INDEX).limit(length).batchSize(length)) {
+      scanned++;
+    }
+    long endTime = System.nanoTime();
+    recordLatency(OperationType.SCAN, intendedStart, startTime, endTime);
+    metricsManager.incrementOperations(OperationType.SCAN);
+    logger.debug("Scanned {} of {} documents from index: {}", scanned, length, startKey);
+  }
+
+  // One READ-MODIFY-WRITE; its read and update are not also counted as READ and UPDATE
+  private void performReadModifyWrite(long intendedStart) {
+    long randomId = operations.nextKey();
+    Bson filter = operations.filter(randomId);
+    Bson update = operations.update(randomId);
+
+    long startTime = System.nanoTime();
+    readCollection.find(filter).first();
+    collection.updateOne(filter, update, UPSERT);
+    long endTime = System.nanoTime();
+    recordLatency(OperationType.READ_MODIFY_WRITE, intendedStart, startTime, endTime);
+    metricsManager.incrementOperations(OperationType.READ_MODIFY_WRITE);
+    logger.debug("Read and updated document with index: {}", randomId);
+  }
+
+  private void performDelete(long intendedStart) {
+    long randomId = operations.nextKey();
+    Bson filter = operations.filter(randomId);
+
+    long startTime = System.nanoTime();
+    collection.deleteOne(filter);
+    long endTime = System.nanoTime();
+    recordLatency(OperationType.DELETE, intendedStart, startTime, endTime);
+    metricsManager.incrementOperations(OperationType.DELETE);
+    logger.debug("Deleted document with index: {}", randomId);
+  }
+
+  private void queueWrite(long intendedStart) {
+    int slot = pendingWrites.size();
+    pendingWrites.add(writeBatcher.request(operations, operations.nextKey()));
+    writeRequested[slot] = System.nanoTime();
+    writeIntended[slot] = intendedStart;
+    if (pendingWrites.size() == writeRequested.length) {
+      flushWrites();
+    }
+  }
+
+  // Like flushReads, each request's latency includes the wait for its batch to be sent
+  private void flushWrites() {
+    int count = pendingWrites.size();
+    if (count == 0) {
+      return;
+    }
+    try {
+      BitSet failed = writeBatcher.write(pendingWrites);
+      long endTime = System.nanoTime();
+      for (int i = 0; i < count; i++) {
+        if (!failed.get(i)) {
+          recordLatency(OperationType.UPDATE, writeIntended[i], writeRequested[i], endTime);
+        }
+      }
+      int succeeded = count - failed.cardinality();
+      metricsManager.addWriteOperations(succeeded);
+      metricsManager.addTotalOperations(succeeded);
+      metricsManager.addFailedOperations(failed.cardinality());
+    } catch (MongoException e) {
+      logger.error("Bulk write failed: {}", e.getMessage(), e);
+      metricsManager.addFailedOperations(count);
+    } finally {
+      pendingWrites.clear();
+    }
+  }
+
+  private void performRead(long intendedStart) {
+    long randomId = operations.nextKey();
+    Bson filter = operations.filter(randomId);
+    if (rawCollection != null) {
+      long startTime = System.nanoTime();
+      RawBsonDocument result = rawCollection.find(filter).first();
+      long endTime = System.nanoTime();
+      recordLatency(OperationType.READ, intendedStart, startTime, endTime);
+      metricsManager.incrementReadOperations();
+      logger.debug(
+          "Read document with index: {}", (result != null ? result.get("index") : "not found"));
+      return;
+    }
+
+    long startTime = System.nanoTime();
+    Document result = collection.find(filter).first();
+    long endTime = System.nanoTime();
+    recordLatency(OperationType.READ, intendedStart, startTime, endTime);
     metricsManager.incrementReadOperations();
     logger.debug(
-        "Read document with index: {}",
-        (result != null ? result.getInteger("index") : "not found"));
+        "Read document with index: {}", (result != null ? result.get("index") : "not found"));
+  }
+
+  private void queueRead(long intendedStart) {
+    int slot = pendingReads.size();
+    pendingReads.add(operations.nextKey());
+    readRequested[slot] = System.nanoTime();
+    readIntended[slot] = intendedStart;
+    if (pendingReads.size() == readRequested.length) {
+      flushReads();
+    }
+  }
+
+  // Each key's latency runs from when it was requested, so it includes the wait for the batch
+  private void flushReads() {
+    int count = pendingReads.size();
+    if (count == 0) {
+      return;
+    }
+    try {
+      Map<Long, ?> results = readBatcher.fetch(pendingReads);
+      long endTime = System.nanoTime();
+      for (int i = 0; i < count; i++) {
+        recordLatency(OperationType.READ, readIntended[i], readRequested[i], endTime);
+      }
+      metricsManager.addReadOperations(count);
+      metricsManager.addTotalOperations(count);
+      logger.debug("Read {} of {} batched documents", results.size(), count);
+    } catch (MongoException e) {
+      logger.error("Batched read failed: {}", e.getMessage(), e);
+      metricsManager.addFailedOperations(count);
+    } finally {
+      pendingReads.clear();
+    }
+  }
+
+  private void performSharedRead(long intendedStart) {
+    long randomId = operations.nextKey();
+    long startTime = System.nanoTime();
+    Object result = readBatcher.read(randomId);
+    long endTime = System.nanoTime();
+    recordLatency(OperationType.READ, intendedStart, startTime, endTime);
+    metricsManager.incrementReadOperations();
+    logger.debug("Read document with index: {}", (result != null ? randomId : "not found"));
+  }
+
+  private void recordLatency(OperationType type, long intendedStart, long startTime, long endTime) {
+    metricsManager.recordLatency(type, endTime - startTime);
+    if (targetOpsPerSec > 0) {
+      // Includes the time the operation waited behind earlier ones (coordinated omission)
+      metricsManager.recordIntendedLatency(type, endTime - intendedStart);
+    }
   }
 }
@@ -0,0 +1,88 @@
+package com.example;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * Counts virtual threads pinned to their carrier (blocking inside {@code synchronized} or native
+ * code) for longer than a threshold, from JFR's {@code jdk.VirtualThreadPinned} events. Each pinned
+ * thread holds one of the few carrier threads, so frequent pinning caps how many logical clients
+ * actually run concurrently. The final report lists where pinning happened.
+ */
+public class PinningMonitor implements Closeable, MetricsReporter {
+  private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+  private static final int REPORTED_SITES = 5;
+
+  private final RecordingStream stream = new RecordingStream();
+  private final LongAdder pinnedEvents = new LongAdder();
+  private final LongAdder pinnedNanos = new LongAdder();
+  private final Map<String, LongAdder> sites = new ConcurrentHashMap<>();
+  private long reportedEvents;
+  private long reportedNanos;
+
+  public PinningMonitor(Duration threshold) {
+    stream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+    stream.onEvent(PINNED_EVENT, this::onPinned);
+  }
+
+  public void start() {
+    stream.startAsync();
+  }
+
+  @Override
+  public void close() {
+    stream.close();
+  }
+
+  private void onPinned(RecordedEvent event) {
+    pinnedEvents.increment();
+    pinnedNanos.add(event.getDuration().toNanos());
+    sites.computeIfAbsent(site(event), k -> new LongAdder()).increment();
+  }
+
+  // Innermost frame outside the JDK, i.e. the driver or app code that blocked while pinned
+  private static String site(RecordedEvent event) {
+    if (event.getStackTrace() == null) {
+      return "unknown";
+    }
+    List<RecordedFrame> frames = event.getStackTrace().getFrames();
+    for (RecordedFrame frame : frames) {
+      String type = frame.getMethod().getType().getName();
+      if (!type.startsWith("java.") && !type.startsWith("jdk.") && !type.startsWith("sun.")) {
+        return type + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+      }
+    }
+    return frames.isEmpty() ? "unknown" : frames.get(0).getMethod().getName();
+  }
+
+  @Override
+  public String intervalReport(double intervalSeconds) {
+    long events = pinnedEvents.sum();
+    long nanos = pinnedNanos.sum();
+    String line =
+        String.format(
+            "[PINNED: Count=%d, Time(ms)=%d]",
+            events - reportedEvents, (nanos - reportedNanos) / 1_000_000);
+    reportedEvents = events;
+    reportedNanos = nanos;
+    return line;
+  }
+
+  @Override
+  public void printFinalReport() {
+    System.out.println("[PINNED], Events, " + pinnedEvents.sum());
+    System.out.println("[PINNED], Time(ms), " + pinnedNanos.sum() / 1_000_000);
+    sites.entrySet().stream()
+        .sorted(Comparator.comparingLong(e -> -e.getValue().sum()))
+        .limit(REPORTED_SITES)
+        .forEach(e -> System.out.println("[PINNED], Site, " + e.getKey() + ", " + e.getValue()));
+  }
+}
@@ -0,0 +1,248 @@
+package com.example;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Load phase with document generation and inserts decoupled. Generator threads build batches into a
+ * bounded queue; writer threads drain it with unordered insertMany calls. A full queue blocks the
+ * generators (backpressure), an empty one blocks the writers, and the time each side spends blocked
+ * shows which of them limits load throughput.
+ */
+public class PipelinedDataLoader<T> implements MetricsReporter {
+  private static final Logger logger = LoggerFactory.getLogger(PipelinedDataLoader.class);
+  private static final int MAX_RETRIES = 5;
+  private static final int RETRY_DELAY_MS = 1000;
+
+  private final MongoCollection<T> collection;
+  private final Supplier<DocumentFactory<T>> documentFactories;
+  private final List<T> endOfStream = Collections.emptyList();
+  private final long totalDocuments;
+  private final int batchSize;
+  private final int generatorThreads;
+  // The sync driver allows one outstanding call per thread, so each writer's in-flight
+  // inserts are issued from that many threads
+  private final int writerThreads;
+  private final BlockingQueue<List<T>> queue;
+  private final MetricsManager metricsManager;
+  private final InsertManyOptions insertOptions = new InsertManyOptions().ordered(false);
+
+  private final AtomicLong nextBatchStart = new AtomicLong();
+  private final LongAdder generatorStallNanos = new LongAdder();
+  private final LongAdder writerStallNanos = new LongAdder();
+  private final LongAdder skippedDocuments = new LongAdder();
+  private long reportedGeneratorStallNanos;
+  private long reportedWriterStallNanos;
+
+  /**
+   * @param documentFactories called once per generator thread
+   */
+  public PipelinedDataLoader(
+      MongoCollection<T> collection,
+      Supplier<DocumentFactory<T>> documentFactories,
+      Config config) {
+    this.collection = collection;
+    this.documentFactories = documentFactories;
+    this.totalDocuments = config.getTotalDocuments();
+    this.batchSize = config.getLoadBatchSize();
+    this.generatorThreads = config.getLoadGeneratorThreads();
+    this.writerThreads = config.getLoadWriterThreads() * config.getLoadWriterInFlight();
+    this.queue = new ArrayBlockingQueue<>(config.getLoadQueueCapacity());
+    this.metricsManager = MetricsManager.getInstance();
+  }
+
+  /**
+   * Starts the generator and writer pools and returns an executor that terminates once every
+   * document has been written (or skipped after retries).
+   */
+  public ExecutorService start() {
+    logger.info(
+        "Pipelined load: {} generator threads, {} writer threads, queue of {} batches of {}",
+        generatorThreads,
+        writerThreads,
+        queue.remainingCapacity(),
+        batchSize);
+
+    ExecutorService generators = Executors.newFixedThreadPool(generatorThreads);
+    ExecutorService writers = Executors.newFixedThreadPool(writerThreads + 1);
+    for (int i = 0; i < generatorThreads; i++) {
+      generators.submit(this::generate);
+    }
+    generators.shutdown();
+    for (int i = 0; i < writerThreads; i++) {
+      int writerId = i;
+      writers.submit(() -> write(writerId));
+    }
+    // Once generation is done, tell every writer to stop after draining the queue
+    writers.submit(
+        () -> {
+          try {
+            generators.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            for (int i = 0; i < writerThreads; i++) {
+              queue.put(endOfStream);
+            }
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        });
+    writers.shutdown();
+    return writers;
+  }
+
+  private void generate() {
+    DocumentFactory<T> documentFactory = documentFactories.get();
+    long start;
+    while ((start = nextBatchStart.getAndAdd(batchSize)) < totalDocuments) {
+      int size = (int) Math.min(batchSize, totalDocuments - start);
+      List<T> batch = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        batch.add(documentFactory.generate(start + i));
+      }
+      long stallStart = System.nanoTime();
+      try {
+        queue.put(batch);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      generatorStallNanos.add(System.nanoTime() - stallStart);
+    }
+  }
+
+  private void write(int writerId) {
+    while (true) {
+      List<T> batch;
+      long stallStart = System.nanoTime();
+      try {
+        batch = queue.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      writerStallNanos.add(System.nanoTime() - stallStart);
+      if (batch == endOfStream) {
+        return;
+      }
+      insertWithRetry(writerId, batch);
+    }
+  }
+
+  /**
+   * Inserts {@code batch}, retrying up to MAX_RETRIES attempts. After a partial failure only the
+   * documents the server reported as failed are retried, since it inserted all the others; those
+   * that failed on a duplicate key were inserted by an earlier attempt and are not retried either.
+   */
+  private void insertWithRetry(int writerId, List<T> batch) {
+    List<T> pending = batch;
+    for (int attempt = 1; attempt <= MAX_RETRIES; attempt++) {
+      long startTime = System.nanoTime();
+      try {
+        collection.insertMany(pending, insertOptions);
+        recordInserted(System.nanoTime() - startTime, pending.size());
+        return;
+      } catch (MongoBulkWriteException e) {
+        List<T> failed = new ArrayList<>();
+        for (BulkWriteError error : e.getWriteErrors()) {
+          if (error.getCategory() != ErrorCategory.DUPLICATE_KEY) {
+            failed.add(pending.get(error.getIndex()));
+          }
+        }
+        recordInserted(System.nanoTime() - startTime, pending.size() - failed.size());
+        logger.error(
+            "Writer {}: {} of {} documents failed: {}",
+            writerId,
+            failed.size(),
+            pending.size(),
+            e.getMessage());
+        metricsManager.incrementFailedOperations();
+        if (failed.isEmpty()) {
+          return;
+        }
+        pending = failed;
+      } catch (MongoException e) {
+        logger.error("Writer {}: Error inserting batch: {}", writerId, e.getMessage());
+        metricsManager.incrementFailedOperations();
+      }
+      if (attempt < MAX_RETRIES) {
+        logger.warn(
+            "Writer {}: Retrying {} documents in {} ms (Attempt {} of {})",
+            writerId,
+            pending.size(),
+            RETRY_DELAY_MS,
+            attempt,
+            MAX_RETRIES);
+        try {
+          Thread.sleep(RETRY_DELAY_MS);
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          logger.error("Writer {}: Interrupted during retry delay", writerId);
+          return;
+        }
+      }
+    }
+    logger.error(
+        "Writer {}: Max retries reached. Skipping {} documents.", writerId, pending.size());
+    skippedDocuments.add(pending.size());
+  }
+
+  private void recordInserted(long latencyNanos, int documents) {
+    metricsManager.recordLatency(OperationType.UPDATE, latencyNanos);
+    metricsManager.addTotalOperations(documents);
+    metricsManager.addWriteOperations(documents);
+  }
+
+  @Override
+  public String intervalReport(double intervalSeconds) {
+    long generatorStall = generatorStallNanos.sum();
+    long writerStall = writerStallNanos.sum();
+    String line =
+        String.format(
+            "[LOAD-PIPELINE: Queued=%d, GeneratorStall=%.1f%%, WriterStall=%.1f%%]",
+            queue.size(),
+            stallPercent(
+                generatorStall - reportedGeneratorStallNanos, generatorThreads, intervalSeconds),
+            stallPercent(writerStall - reportedWriterStallNanos, writerThreads, intervalSeconds));
+    reportedGeneratorStallNanos = generatorStall;
+    reportedWriterStallNanos = writerStall;
+    return line;
+  }
+
+  @Override
+  public void printFinalReport() {
+    long generatorStallMs = generatorStallNanos.sum() / 1_000_000;
+    long writerStallMs = writerStallNanos.sum() / 1_000_000;
+    System.out.println("[LOAD-PIPELINE], GeneratorThreads, " + generatorThreads);
+    System.out.println("[LOAD-PIPELINE], WriterThreads, " + writerThreads);
+    System.out.println("[LOAD-PIPELINE], GeneratorStall(ms), " + generatorStallMs);
+    System.out.println("[LOAD-PIPELINE], WriterStall(ms), " + writerStallMs);
+    System.out.println("[LOAD-PIPELINE], SkippedDocuments, " + skippedDocuments.sum());
+    // Generators blocked on a full queue means the writers (i.e. the cluster) set the pace
+    System.out.println(
+        "[LOAD-PIPELINE], LimitedBy, "
+            + (generatorStallMs / (double) generatorThreads > writerStallMs / (double) writerThreads
+                ? "writers"
+                : "generators"));
+  }
+
+  // Share of the threads' combined time spent blocked on the queue
+  private static double stallPercent(long stallNanos, int threads, double intervalSeconds) {
+    return intervalSeconds > 0 ? stallNanos / (threads * intervalSeconds * 10_000_000) : 0;
+  }
+}
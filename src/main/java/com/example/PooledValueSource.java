@@ -0,0 +1,214 @@
+package com.example;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.SplittableRandom;
+
+/**
+ * Assembles values from a shared {@link ValuePool} with cheap random picks; numbers, ids and
+ * padding are drawn fresh for every call.
+ */
+public class PooledValueSource implements ValueSource {
+  private final ValuePool pool;
+  private final Clock clock;
+  private SplittableRandom random;
+
+  public PooledValueSource(ValuePool pool, SplittableRandom random, Clock clock) {
+    this.pool = pool;
+    this.random = random;
+    this.clock = clock;
+  }
+
+  @Override
+  public void reseed(long seed) {
+    random = new SplittableRandom(seed);
+  }
+
+  @Override
+  public Instant now() {
+    return clock.instant();
+  }
+
+  private String pick(String[] values) {
+    return values[random.nextInt(values.length)];
+  }
+
+  @Override
+  public String firstName() {
+    return pick(pool.firstNames);
+  }
+
+  @Override
+  public String lastName() {
+    return pick(pool.lastNames);
+  }
+
+  @Override
+  public String email() {
+    return pick(pool.emails);
+  }
+
+  @Override
+  public String phoneNumber() {
+    return pick(pool.phoneNumbers);
+  }
+
+  @Override
+  public String streetAddress() {
+    return pick(pool.streetAddresses);
+  }
+
+  @Override
+  public String city() {
+    return pick(pool.cities);
+  }
+
+  @Override
+  public String state() {
+    return pick(pool.states);
+  }
+
+  @Override
+  public String country() {
+    return pick(pool.countries);
+  }
+
+  @Override
+  public String zipCode() {
+    return pick(pool.zipCodes);
+  }
+
+  @Override
+  public String latitude() {
+    return pick(pool.latitudes);
+  }
+
+  @Override
+  public String longitude() {
+    return pick(pool.longitudes);
+  }
+
+  @Override
+  public String timeZone() {
+    return pick(pool.timeZones);
+  }
+
+  @Override
+  public String language() {
+    return pick(pool.languages);
+  }
+
+  @Override
+  public String currencyCode() {
+    return pick(pool.currencyCodes);
+  }
+
+  @Override
+  public String productName() {
+    return pick(pool.productNames);
+  }
+
+  @Override
+  public String paragraph() {
+    return pick(pool.paragraphs);
+  }
+
+  @Override
+  public String department() {
+    return pick(pool.departments);
+  }
+
+  @Override
+  public String material() {
+    return pick(pool.materials);
+  }
+
+  @Override
+  public String colorName() {
+    return pick(pool.colorNames);
+  }
+
+  @Override
+  public String userAgent() {
+    return pick(pool.userAgents);
+  }
+
+  @Override
+  public String ipV4Address() {
+    return pick(pool.ipV4Addresses);
+  }
+
+  @Override
+  public String url() {
+    return pick(pool.urls);
+  }
+
+  @Override
+  public String word() {
+    return pick(pool.words);
+  }
+
+  @Override
+  public String username() {
+    return pick(pool.usernames);
+  }
+
+  @Override
+  public String sentence() {
+    return pick(pool.sentences);
+  }
+
+  @Override
+  public String uuid() {
+    return ValueSource.randomUuid(random.nextLong(), random.nextLong());
+  }
+
+  @Override
+  public String digits(int count) {
+    char[] digits = new char[count];
+    for (int i = 0; i < count; i++) {
+      digits[i] = (char) ('0' + random.nextInt(10));
+    }
+    return new String(digits);
+  }
+
+  @Override
+  public String padding(int length) {
+    String source = pool.paddingSource;
+    if (length <= source.length()) {
+      int offset = random.nextInt(source.length() - length + 1);
+      return source.substring(offset, offset + length);
+    }
+    StringBuilder padding = new StringBuilder(length);
+    while (padding.length() < length) {
+      padding.append(source, 0, Math.min(source.length(), length - padding.length()));
+    }
+    return padding.toString();
+  }
+
+  @Override
+  public boolean nextBoolean() {
+    return random.nextBoolean();
+  }
+
+  @Override
+  public int intBetween(int min, int max) {
+    return random.nextInt(min, max);
+  }
+
+  @Override
+  public long longBetween(long min, long max) {
+    return random.nextLong(min, max);
+  }
+
+  @Override
+  public double randomDouble(int decimals, int min, int max) {
+    double scale = Math.pow(10, decimals);
+    return Math.round(random.nextDouble(min, max) * scale) / scale;
+  }
+
+  @Override
+  public String option(String... options) {
+    return options[random.nextInt(options.length)];
+  }
+}
@@ -0,0 +1,216 @@
+package com.example;
+
+import java.time.Instant;
+import org.bson.BsonBinaryWriter;
+import org.bson.RawBsonDocument;
+import org.bson.io.BasicOutputBuffer;
+
+/**
+ * Writes the same rich documents as {@link DocumentGenerator} straight into BSON, without building
+ * a {@code Document} tree. The size is known as soon as the last field is written, so padding is
+ * exact and the result is wrapped as a {@link RawBsonDocument} that the driver sends without
+ * another encoding pass. Not thread-safe: the output buffer is reused across calls.
+ */
+public class RawDocumentGenerator implements DocumentFactory<RawBsonDocument> {
+  private static final String PADDING_FIELD = "padding";
+  // type byte + field name cstring + int32 string length + string terminator
+  private static final int PADDING_OVERHEAD = 1 + PADDING_FIELD.length() + 1 + 4 + 1;
+  private static final int DOCUMENT_TERMINATOR = 1;
+
+  private final ValueSource values;
+  private final BasicOutputBuffer buffer = new BasicOutputBuffer(8 * 1024);
+  private final int targetSize;
+
+  public RawDocumentGenerator(ValueSource values, int targetSize) {
+    this.values = values;
+    this.targetSize = targetSize;
+  }
+
+  @Override
+  public RawBsonDocument generate(long index) {
+    buffer.truncateToPosition(0);
+    try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+      writer.writeStartDocument();
+      writer.writeInt64("index", index);
+      writer.writeInt64("timestamp", values.now().toEpochMilli());
+      writeUser(writer);
+      writeOrder(writer);
+      writeProduct(writer);
+      writeShipping(writer);
+      writePayment(writer);
+      writeMetadata(writer);
+      writeTags(writer);
+      writeComments(writer);
+
+      int paddingSize = targetSize - buffer.getPosition() - PADDING_OVERHEAD - DOCUMENT_TERMINATOR;
+      if (paddingSize > 0) {
+        writer.writeString(PADDING_FIELD, values.padding(paddingSize));
+      }
+      writer.writeEndDocument();
+    }
+    return new RawBsonDocument(buffer.toByteArray());
+  }
+
+  private void writeUser(BsonBinaryWriter writer) {
+    writer.writeStartDocument("user");
+    writer.writeString("firstName", values.firstName());
+    writer.writeString("lastName", values.lastName());
+    writer.writeString("email", values.email());
+    writer.writeString("phone", values.phoneNumber());
+    writeAddress(writer, "address");
+    writer.writeInt64("dateOfBirth", values.birthday());
+    writer.writeInt64(
+        "registrationDate",
+        values.now().minusSeconds(values.longBetween(0L, 31536000L)).toEpochMilli());
+    writer.writeInt64(
+        "lastLoginDate",
+        values.now().minusSeconds(values.longBetween(0L, 2592000L)).toEpochMilli());
+    writer.writeStartDocument("preferences");
+    writer.writeString("language", values.language());
+    writer.writeString("currency", values.currencyCode());
+    writer.writeString("timezone", values.timeZone());
+    writer.writeBoolean("marketingEmails", values.nextBoolean());
+    writer.writeBoolean("twoFactorAuth", values.nextBoolean());
+    writer.writeEndDocument();
+    writer.writeEndDocument();
+  }
+
+  void writeAddress(BsonBinaryWriter writer, String name) {
+    writer.writeStartDocument(name);
+    writer.writeString("street", values.streetAddress());
+    writer.writeString("city", values.city());
+    writer.writeString("state", values.state());
+    writer.writeString("country", values.country());
+    writer.writeString("zipCode", values.zipCode());
+    writer.writeStartDocument("coordinates");
+    writer.writeString("lat", values.latitude());
+    writer.writeString("lng", values.longitude());
+    writer.writeEndDocument();
+    writer.writeEndDocument();
+  }
+
+  private void writeOrder(BsonBinaryWriter writer) {
+    writer.writeStartDocument("order");
+    writer.writeString("orderId", values.uuid());
+    writer.writeInt64(
+        "orderDate", values.now().minusSeconds(values.longBetween(0L, 2592000L)).toEpochMilli());
+
+    double subtotal = 0;
+    double discount = 0;
+    writer.writeStartArray("items");
+    int itemCount = values.intBetween(1, 6);
+    for (int i = 0; i < itemCount; i++) {
+      int quantity = values.intBetween(1, 10);
+      double price = values.randomDouble(2, 1, 1000);
+      double itemDiscount = values.randomDouble(2, 0, 1);
+      writer.writeStartDocument();
+      writer.writeString("productId", values.uuid());
+      writer.writeString("name", values.productName());
+      writer.writeInt32("quantity", quantity);
+      writer.writeDouble("price", price);
+      writer.writeDouble("discount", itemDiscount);
+      writer.writeEndDocument();
+      subtotal += quantity * price;
+      discount += quantity * price * itemDiscount;
+    }
+    writer.writeEndArray();
+
+    double tax = (subtotal - discount) * 0.1; // Assuming 10% tax
+    writer.writeDouble("subtotal", subtotal);
+    writer.writeDouble("discount", discount);
+    writer.writeDouble("tax", tax);
+    writer.writeDouble("total", subtotal - discount + tax);
+    writer.writeString(
+        "status", values.option("pending", "processing", "shipped", "delivered", "cancelled"));
+    writer.writeEndDocument();
+  }
+
+  private void writeProduct(BsonBinaryWriter writer) {
+    writer.writeStartDocument("product");
+    writer.writeString("productId", values.uuid());
+    writer.writeString("name", values.productName());
+    writer.writeString("description", values.paragraph());
+    writer.writeString("category", values.department());
+    writer.writeString("subcategory", values.material());
+    writer.writeDouble("price", values.randomDouble(2, 1, 1000));
+    writer.writeString("currency", values.currencyCode());
+    writer.writeInt32("inStock", values.intBetween(0, 1000));
+    writer.writeStartDocument("attributes");
+    writer.writeString("color", values.colorName());
+    writer.writeString("size", values.option("XS", "S", "M", "L", "XL", "XXL"));
+    writer.writeDouble("weight", values.randomDouble(2, 1, 100));
+    writer.writeStartDocument("dimensions");
+    writer.writeDouble("length", values.randomDouble(2, 1, 100));
+    writer.writeDouble("width", values.randomDouble(2, 1, 100));
+    writer.writeDouble("height", values.randomDouble(2, 1, 100));
+    writer.writeEndDocument();
+    writer.writeEndDocument();
+    writer.writeEndDocument();
+  }
+
+  private void writeShipping(BsonBinaryWriter writer) {
+    writer.writeStartDocument("shipping");
+    writer.writeString("method", values.option("Standard", "Express", "Next Day", "International"));
+    writer.writeString("carrier", values.option("UPS", "FedEx", "DHL", "USPS"));
+    writer.writeString("trackingNumber", values.digits(12));
+    writer.writeInt64(
+        "estimatedDelivery",
+        values.now().plusSeconds(values.longBetween(86400L, 1209600L)).toEpochMilli()); // 1-14 days
+    writeAddress(writer, "shippingAddress");
+    writer.writeEndDocument();
+  }
+
+  private void writePayment(BsonBinaryWriter writer) {
+    writer.writeStartDocument("payment");
+    writer.writeString(
+        "method", values.option("Credit Card", "PayPal", "Bank Transfer", "Cash on Delivery"));
+    writer.writeString("transactionId", values.uuid());
+    writer.writeDouble("amount", values.randomDouble(2, 10, 1000));
+    writer.writeString("currency", values.currencyCode());
+    writer.writeString("status", values.option("pending", "completed", "failed", "refunded"));
+    writer.writeString(
+        "cardType", values.option("Visa", "MasterCard", "American Express", "Discover"));
+    writer.writeString("last4", values.digits(4));
+    writer.writeEndDocument();
+  }
+
+  private void writeMetadata(BsonBinaryWriter writer) {
+    writer.writeStartDocument("metadata");
+    writer.writeString("userAgent", values.userAgent());
+    writer.writeString("ipAddress", values.ipV4Address());
+    writer.writeString("referrer", values.url());
+    writer.writeString("sessionId", values.uuid());
+    writer.writeEndDocument();
+  }
+
+  private void writeTags(BsonBinaryWriter writer) {
+    writer.writeStartArray("tags");
+    int tagCount = values.intBetween(1, 6);
+    for (int i = 0; i < tagCount; i++) {
+      writer.writeString(values.word());
+    }
+    writer.writeEndArray();
+  }
+
+  private void writeComments(BsonBinaryWriter writer) {
+    writer.writeStartArray("comments");
+    int commentCount = values.intBetween(0, 5);
+    for (int i = 0; i < commentCount; i++) {
+      writeComment(writer, true);
+    }
+    writer.writeEndArray();
+  }
+
+  // A backdated comment is up to 30 days old, otherwise it is posted now
+  void writeComment(BsonBinaryWriter writer, boolean backdated) {
+    writer.writeStartDocument();
+    writer.writeString("userId", values.uuid());
+    writer.writeString("username", values.username());
+    writer.writeString("comment", values.sentence());
+    writer.writeInt32("rating", values.intBetween(1, 6));
+    Instant timestamp =
+        backdated ? values.now().minusSeconds(values.longBetween(0L, 2592000L)) : values.now();
+    writer.writeInt64("timestamp", timestamp.toEpochMilli());
+    writer.writeEndDocument();
+  }
+}
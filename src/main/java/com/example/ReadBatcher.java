@@ -0,0 +1,179 @@
+package com.example;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongFunction;
+
+/**
+ * Serves point reads as {@code find({index: {$in: [...]}})} multi-gets. A worker either collects
+ * its own keys and hands them over with {@link #fetch}, or calls {@link #read} and has its key
+ * coalesced with concurrent reads from other workers: the first key opens a batch, which is sent
+ * when it holds {@code batchSize} keys or when the window has passed, whichever comes first.
+ * Callers record each key's latency as READ; the round-trips themselves are reported as READ-BATCH.
+ */
+public class ReadBatcher<T> implements MetricsReporter {
+  private static final String LABEL = "READ-BATCH";
+
+  private final MongoCollection<T> collection;
+  private final ToLongFunction<T> indexOf;
+  private final int batchSize;
+  private final long windowNanos;
+  private final boolean shared;
+  private final LatencyHistogram batchLatency = new LatencyHistogram();
+  private final LongAdder batches = new LongAdder();
+  private final LongAdder batchedKeys = new LongAdder();
+  private final LongAdder missingKeys = new LongAdder();
+  private long reportedBatches;
+  private long reportedKeys;
+
+  // Shared scope: the batch still accepting keys, if any
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition batchClosed = lock.newCondition();
+  private PendingBatch<T> open;
+
+  /**
+   * @param indexOf reads the {@code index} field back from a returned document
+   */
+  public ReadBatcher(MongoCollection<T> collection, ToLongFunction<T> indexOf, Config config) {
+    this.collection = collection;
+    this.indexOf = indexOf;
+    this.batchSize = config.getReadBatchSize();
+    this.windowNanos = TimeUnit.MICROSECONDS.toNanos(config.getReadBatchWindowMicros());
+    this.shared = config.isReadBatchShared();
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public long getWindowNanos() {
+    return windowNanos;
+  }
+
+  /** Whether workers call {@link #read} rather than batching their own keys. */
+  public boolean isShared() {
+    return shared;
+  }
+
+  /** Reads all {@code keys} in one round-trip and returns the documents found, by index. */
+  public Map<Long, T> fetch(List<Long> keys) {
+    Map<Long, T> results = new HashMap<>(keys.size() * 2);
+    long startTime = System.nanoTime();
+    for (T document : collection.find(Filters.in("index", keys)).batchSize(keys.size())) {
+      results.put(indexOf.applyAsLong(document), document);
+    }
+    batchLatency.recordNanos(System.nanoTime() - startTime);
+
+    batches.increment();
+    batchedKeys.add(keys.size());
+    for (Long key : keys) {
+      if (!results.containsKey(key)) {
+        missingKeys.increment();
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Reads one key as part of a batch shared with other workers, blocking until that batch has been
+   * read. Returns null if there is no document with this index.
+   */
+  public T read(long key) {
+    PendingBatch<T> batch;
+    boolean send = false;
+    lock.lock();
+    try {
+      if (open == null) {
+        open = new PendingBatch<>(System.nanoTime() + windowNanos);
+      }
+      batch = open;
+      batch.keys.add(key);
+      if (batch.keys.size() >= batchSize) {
+        open = null;
+        send = true;
+        batchClosed.signalAll();
+      } else if (batch.keys.size() == 1) {
+        // The first caller waits out the window, then sends whatever has joined by then
+        try {
+          long remaining;
+          while (open == batch && (remaining = batch.deadline - System.nanoTime()) > 0) {
+            batchClosed.awaitNanos(remaining);
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        if (open == batch) {
+          open = null;
+          send = true;
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+
+    if (send) {
+      try {
+        batch.results.complete(fetch(batch.keys));
+      } catch (RuntimeException e) {
+        batch.results.completeExceptionally(e);
+      }
+    }
+    try {
+      return batch.results.join().get(key);
+    } catch (CompletionException e) {
+      // Every caller in the batch sees the MongoException its own read would have thrown
+      throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+    }
+  }
+
+  @Override
+  public String intervalReport(double intervalSeconds) {
+    long batchCount = batches.sum();
+    long keyCount = batchedKeys.sum();
+    long intervalBatches = batchCount - reportedBatches;
+    String line =
+        MetricsManager.formatIntervalStats(LABEL, LatencySummary.of(batchLatency.sampleInterval()))
+            + String.format(
+                " [%s-KEYS: Avg=%.1f]",
+                LABEL,
+                intervalBatches > 0 ? (keyCount - reportedKeys) / (double) intervalBatches : 0);
+    reportedBatches = batchCount;
+    reportedKeys = keyCount;
+    return line;
+  }
+
+  @Override
+  public void printFinalReport() {
+    long batchCount = batches.sum();
+    MetricsManager.printLatencyReport(
+        LABEL, batchCount, LatencySummary.of(batchLatency.getCumulative()));
+    String label = "[" + LABEL + "], ";
+    System.out.println(label + "Scope, " + (shared ? "shared" : "thread"));
+    System.out.println(label + "MaxKeys, " + batchSize);
+    System.out.println(
+        label
+            + "AverageKeys, "
+            + String.format("%.2f", batchCount > 0 ? batchedKeys.sum() / (double) batchCount : 0));
+    System.out.println(label + "KeysNotFound, " + missingKeys.sum());
+  }
+
+  private static class PendingBatch<T> {
+    private final long deadline;
+    private final List<Long> keys = new ArrayList<>();
+    private final CompletableFuture<Map<Long, T>> results = new CompletableFuture<>();
+
+    PendingBatch(long deadline) {
+      this.deadline = deadline;
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package com.example;
+
+import com.mongodb.connection.ClusterDescription;
+import com.mongodb.connection.ServerDescription;
+import com.mongodb.selector.ServerSelector;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drops secondaries whose RTT {@link ServerHealth} finds degrading from the servers the read
+ * preference allows, unless every secondary is degrading. The driver applies it after the read
+ * preference and before its own latency window, so it only changes which secondary serves a read;
+ * primaries and reads that must go to the primary are left alone.
+ */
+public class RttAwareServerSelector implements ServerSelector {
+  private final ServerHealth health;
+
+  public RttAwareServerSelector(ServerHealth health) {
+    this.health = health;
+  }
+
+  @Override
+  public List<ServerDescription> select(ClusterDescription clusterDescription) {
+    List<ServerDescription> candidates = clusterDescription.getServerDescriptions();
+    List<ServerDescription> selected = new ArrayList<>(candidates.size());
+    List<ServerDescription> degraded = null;
+    boolean healthySecondary = false;
+    for (ServerDescription server : candidates) {
+      if (server.isSecondary() && health.isDegraded(server.getAddress())) {
+        if (degraded == null) {
+          degraded = new ArrayList<>();
+        }
+        degraded.add(server);
+      } else {
+        selected.add(server);
+        healthySecondary |= server.isSecondary();
+      }
+    }
+    if (degraded == null || !healthySecondary) {
+      return candidates;
+    }
+    for (ServerDescription server : degraded) {
+      health.steeredAway(server.getAddress());
+    }
+    return selected;
+  }
+
+  @Override
+  public String toString() {
+    return "RttAwareServerSelector";
+  }
+}
@@ -0,0 +1,17 @@
+package com.example;
+
+/**
+ * Derives independent seeds from a base seed, so generated data depends on the seed and the
+ * document (or thread) it is for, never on which thread happens to generate it.
+ */
+public final class Seeds {
+  private Seeds() {}
+
+  /** Seed for stream {@code id} under {@code seed}; SplitMix64's finalizer decorrelates ids. */
+  public static long mix(long seed, long id) {
+    long z = seed + (id + 1) * 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+}
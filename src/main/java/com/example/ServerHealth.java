@@ -0,0 +1,273 @@
+package com.example;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ServerDescription;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Heartbeat round-trip times and health of each server, fed by the server monitor and server
+ * listeners. Polling heartbeats are single round trips and are recorded as RTT samples. Streaming
+ * (awaited) heartbeats wait on the server for a topology change, so in that mode the RTT is the
+ * driver's own moving average from its separate RTT pings, as published in each server description.
+ * Each interval sets a server's RTT beside the latency of the commands it ran, so network time can
+ * be told apart from time spent in the server. A server is degrading while its RTT is well above
+ * the median of its recent samples; {@link RttAwareServerSelector} steers reads away from it.
+ */
+public class ServerHealth implements MetricsReporter {
+  private static final Logger logger = LoggerFactory.getLogger(ServerHealth.class);
+  private static final ServerHealth INSTANCE = new ServerHealth();
+  // RTT samples a server's baseline is the median of
+  private static final int BASELINE_SAMPLES = 30;
+  private static final int MIN_BASELINE_SAMPLES = 5;
+  // Smaller increases are network noise, whatever the ratio
+  private static final long MIN_DEGRADATION_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final Map<ServerAddress, Node> nodes = new ConcurrentHashMap<>();
+  private volatile double degradedFactor = 2.0;
+
+  private ServerHealth() {}
+
+  public static ServerHealth getInstance() {
+    return INSTANCE;
+  }
+
+  /** A server is degrading while its RTT exceeds {@code factor} times its baseline. */
+  public void setDegradedFactor(double factor) {
+    degradedFactor = factor;
+  }
+
+  public void heartbeatSucceeded(ServerAddress server, long elapsedNanos, boolean awaited) {
+    Node node = node(server);
+    node.streaming = awaited;
+    if (awaited) {
+      node.awaitedHeartbeats.increment();
+      return;
+    }
+    node.heartbeats.increment();
+    node.rtt.recordNanos(elapsedNanos);
+    node.addSample(elapsedNanos, degradedFactor);
+  }
+
+  public void heartbeatFailed(ServerAddress server, boolean awaited) {
+    Node node = node(server);
+    node.streaming = awaited;
+    node.failures.increment();
+  }
+
+  public void serverDescriptionChanged(ServerDescription description) {
+    if (description.getRoundTripTimeNanos() == 0) {
+      return;
+    }
+    Node node = node(description.getAddress());
+    node.driverRttNanos = description.getRoundTripTimeNanos();
+    if (node.streaming) {
+      node.addSample(node.driverRttNanos, degradedFactor);
+    }
+  }
+
+  public boolean isDegraded(ServerAddress server) {
+    Node node = nodes.get(server);
+    return node != null && node.degraded;
+  }
+
+  /** Counts a selection that passed over {@code server} because it was degrading. */
+  public void steeredAway(ServerAddress server) {
+    node(server).steered.increment();
+  }
+
+  private Node node(ServerAddress server) {
+    return nodes.computeIfAbsent(server, address -> new Node());
+  }
+
+  // Runs after CommandLatencies, whose intervals it reads
+  @Override
+  public String intervalReport(double intervalSeconds) {
+    StringBuilder line = new StringBuilder();
+    long now = System.currentTimeMillis();
+    nodes.forEach(
+        (server, node) -> {
+          Histogram rtt = node.rtt.sampleInterval();
+          Histogram commands = CommandLatencies.getInstance().lastInterval(server);
+          Point point = new Point(now, node, rtt, commands);
+          synchronized (node.series) {
+            node.series.add(point);
+          }
+          if (line.length() > 0) {
+            line.append(' ');
+          }
+          line.append(
+              String.format(
+                  "[SERVER %s: Mode=%s, Heartbeats=%d, Failures=%d, RTTAvg=%.1f, RTT99=%d,"
+                      + " DriverRTT=%d, CmdAvg=%.1f, Cmd99=%d, ServerEst=%.1f, Degraded=%s]",
+                  server,
+                  point.mode,
+                  point.heartbeats,
+                  point.failures,
+                  point.rttMean,
+                  point.rttP99,
+                  point.driverRttMicros,
+                  point.commandMean,
+                  point.commandP99,
+                  point.serverEstimate(),
+                  point.degraded));
+        });
+    return line.length() > 0 ? line.toString() : null;
+  }
+
+  @Override
+  public void printFinalReport() {
+    nodes.forEach(
+        (server, node) -> {
+          Histogram rtt = node.rtt.getCumulative();
+          if (rtt.getTotalCount() > 0) {
+            MetricsManager.printLatencyReport(
+                "HEARTBEAT " + server, rtt.getTotalCount(), LatencySummary.of(rtt));
+          }
+          String label = "[SERVER " + server + "], ";
+          System.out.println(label + "Mode, " + (node.streaming ? "streaming" : "polling"));
+          System.out.println(label + "Heartbeats, " + node.heartbeats.sum());
+          System.out.println(label + "AwaitedHeartbeats, " + node.awaitedHeartbeats.sum());
+          System.out.println(label + "HeartbeatFailures, " + node.failures.sum());
+          System.out.println(
+              label + "DriverRTT(us), " + TimeUnit.NANOSECONDS.toMicros(node.driverRttNanos));
+          System.out.println(label + "SteeredReads, " + node.steered.sum());
+        });
+  }
+
+  /** Writes every server's interval series as CSV. */
+  public void export(String file) {
+    Path path = Path.of(file);
+    try (Writer writer = Files.newBufferedWriter(path)) {
+      writer.write(
+          "timestamp,server,mode,heartbeats,failures,rttCount,rttMean,rttP50,rttP99,driverRtt,"
+              + "commandCount,commandMean,commandP99,serverEstimate,degraded\n");
+      for (Map.Entry<ServerAddress, Node> entry : nodes.entrySet()) {
+        synchronized (entry.getValue().series) {
+          for (Point point : entry.getValue().series) {
+            writer.write(point.toCsv(entry.getKey()));
+          }
+        }
+      }
+      logger.info("Wrote server health of {} servers to {}", nodes.size(), path);
+    } catch (IOException e) {
+      logger.error("Failed to write server health to {}: {}", path, e.getMessage());
+    }
+  }
+
+  private static final class Node {
+    private final LatencyHistogram rtt = new LatencyHistogram();
+    private final LongAdder heartbeats = new LongAdder();
+    private final LongAdder awaitedHeartbeats = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder steered = new LongAdder();
+    // Recent RTT samples, oldest overwritten first
+    private final long[] samples = new long[BASELINE_SAMPLES];
+    private int sampleCount;
+    private final List<Point> series = new ArrayList<>();
+    private volatile boolean streaming;
+    private volatile long driverRttNanos;
+    // Latest RTT sample, from either source
+    private volatile long lastRttNanos;
+    private volatile boolean degraded;
+    // Counts at the last interval, read by the reporting thread only
+    private long reportedHeartbeats;
+    private long reportedFailures;
+
+    private synchronized void addSample(long rttNanos, double factor) {
+      if (sampleCount >= MIN_BASELINE_SAMPLES) {
+        int count = Math.min(sampleCount, BASELINE_SAMPLES);
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        long baseline = sorted[count / 2];
+        degraded = rttNanos > baseline * factor && rttNanos - baseline >= MIN_DEGRADATION_NANOS;
+      }
+      samples[sampleCount++ % BASELINE_SAMPLES] = rttNanos;
+      lastRttNanos = rttNanos;
+    }
+  }
+
+  private static final class Point {
+    private final long timestampMillis;
+    private final String mode;
+    private final long heartbeats;
+    private final long failures;
+    private final long rttCount;
+    private final double rttMean;
+    private final long rttP50;
+    private final long rttP99;
+    private final long driverRttMicros;
+    private final long lastRttMicros;
+    private final long commandCount;
+    private final double commandMean;
+    private final long commandP99;
+    private final boolean degraded;
+
+    private Point(long timestampMillis, Node node, Histogram rtt, Histogram commands) {
+      this.timestampMillis = timestampMillis;
+      this.mode = node.streaming ? "streaming" : "polling";
+      long heartbeats = node.heartbeats.sum() + node.awaitedHeartbeats.sum();
+      long failures = node.failures.sum();
+      this.heartbeats = heartbeats - node.reportedHeartbeats;
+      this.failures = failures - node.reportedFailures;
+      node.reportedHeartbeats = heartbeats;
+      node.reportedFailures = failures;
+      this.rttCount = rtt.getTotalCount();
+      this.rttMean = rtt.getMean();
+      this.rttP50 = rtt.getValueAtPercentile(50);
+      this.rttP99 = rtt.getValueAtPercentile(99);
+      this.driverRttMicros = TimeUnit.NANOSECONDS.toMicros(node.driverRttNanos);
+      this.lastRttMicros = TimeUnit.NANOSECONDS.toMicros(node.lastRttNanos);
+      this.commandCount = commands != null ? commands.getTotalCount() : 0;
+      this.commandMean = commands != null ? commands.getMean() : 0;
+      this.commandP99 = commands != null ? commands.getValueAtPercentile(99) : 0;
+      this.degraded = node.degraded;
+    }
+
+    // Mean command latency less one round trip: the time commands spent in the server. Without a
+    // sample this interval the latest one stands in; the driver's RTT starts from the connection
+    // handshake and only moves when the server description changes.
+    private double serverEstimate() {
+      if (commandCount == 0) {
+        return 0;
+      }
+      double roundTrip =
+          rttCount > 0 ? rttMean : lastRttMicros > 0 ? lastRttMicros : driverRttMicros;
+      return Math.max(0, commandMean - roundTrip);
+    }
+
+    private String toCsv(ServerAddress server) {
+      return String.format(
+          Locale.ROOT,
+          "%d,%s,%s,%d,%d,%d,%.1f,%d,%d,%d,%d,%.1f,%d,%.1f,%s%n",
+          timestampMillis,
+          server,
+          mode,
+          heartbeats,
+          failures,
+          rttCount,
+          rttMean,
+          rttP50,
+          rttP99,
+          driverRttMicros,
+          commandCount,
+          commandMean,
+          commandP99,
+          serverEstimate(),
+          degraded);
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package com.example;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Operation counters written by exactly one thread and read by any number of others. Updates use
+ * opaque accesses, so the owner never issues a fence or a CAS and readers still see whole values.
+ * Once the owner has ended its counts are final and can be folded into a shared total.
+ */
+final class ThreadCounters {
+  enum Counter {
+    TOTAL,
+    READ,
+    WRITE,
+    INSERT,
+    SCAN,
+    READ_MODIFY_WRITE,
+    DELETE,
+    FAILED
+  }
+
+  private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+  // 64 bytes either side so neighbouring objects never share a cache line with the counters
+  private static final int PADDING = 8;
+
+  private final long[] slots = new long[PADDING + Counter.values().length + PADDING];
+  private final Thread owner = Thread.currentThread();
+
+  void add(Counter counter, long delta) {
+    int slot = PADDING + counter.ordinal();
+    SLOTS.setOpaque(slots, slot, (long) SLOTS.getOpaque(slots, slot) + delta);
+  }
+
+  long get(Counter counter) {
+    return (long) SLOTS.getOpaque(slots, PADDING + counter.ordinal());
+  }
+
+  /**
+   * Whether the owning thread has ended. A thread's writes happen-before another thread sees it is
+   * no longer alive, so the counts read after this returns true are complete.
+   */
+  boolean isRetired() {
+    return !owner.isAlive();
+  }
+
+  /** Adds every count to {@code totals}, indexed by counter ordinal. */
+  void addTo(long[] totals) {
+    for (int i = 0; i < totals.length; i++) {
+      totals[i] += (long) SLOTS.getOpaque(slots, PADDING + i);
+    }
+  }
+}
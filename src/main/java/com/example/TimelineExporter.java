@@ -0,0 +1,121 @@
+package com.example;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Writes the interval timeline of a run as CSV, or as JSON when the file name ends in .json. */
+public class TimelineExporter {
+  private static final Logger logger = LoggerFactory.getLogger(TimelineExporter.class);
+  private static final String[] LATENCY_COLUMNS = {
+    "count", "min", "max", "mean", "p50", "p95", "p99", "p999", "p9999"
+  };
+
+  public static void export(List<IntervalSnapshot> timeline, String file) {
+    Path path = Path.of(file);
+    try (Writer writer = Files.newBufferedWriter(path)) {
+      if (file.toLowerCase(Locale.ROOT).endsWith(".json")) {
+        writeJson(timeline, writer);
+      } else {
+        writeCsv(timeline, writer);
+      }
+      logger.info("Wrote {} interval snapshots to {}", timeline.size(), path);
+    } catch (IOException e) {
+      logger.error("Failed to write metrics timeline to {}: {}", path, e.getMessage());
+    }
+  }
+
+  private static void writeCsv(List<IntervalSnapshot> timeline, Writer writer) throws IOException {
+    StringBuilder header =
+        new StringBuilder("timestamp,elapsedSec,intervalSec,operations,errors,opsPerSec");
+    Iterable<String> series =
+        timeline.isEmpty() ? List.of() : timeline.get(0).getLatencySeries().keySet();
+    for (String name : series) {
+      for (String column : LATENCY_COLUMNS) {
+        header.append(',').append(name).append('_').append(column);
+      }
+    }
+    writer.write(header.append('\n').toString());
+
+    for (IntervalSnapshot snapshot : timeline) {
+      StringBuilder row =
+          new StringBuilder()
+              .append(snapshot.getTimestampMillis())
+              .append(',')
+              .append(String.format(Locale.ROOT, "%.3f", snapshot.getElapsedSeconds()))
+              .append(',')
+              .append(String.format(Locale.ROOT, "%.3f", snapshot.getIntervalSeconds()))
+              .append(',')
+              .append(snapshot.getOperations())
+              .append(',')
+              .append(snapshot.getErrors())
+              .append(',')
+              .append(String.format(Locale.ROOT, "%.1f", snapshot.getThroughput()));
+      for (String name : series) {
+        LatencySummary latency = snapshot.getLatencySeries().get(name);
+        row.append(',')
+            .append(latency.getCount())
+            .append(',')
+            .append(latency.getMin())
+            .append(',')
+            .append(latency.getMax())
+            .append(',')
+            .append(String.format(Locale.ROOT, "%.2f", latency.getMean()))
+            .append(',')
+            .append(latency.getP50())
+            .append(',')
+            .append(latency.getP95())
+            .append(',')
+            .append(latency.getP99())
+            .append(',')
+            .append(latency.getP999())
+            .append(',')
+            .append(latency.getP9999());
+      }
+      writer.write(row.append('\n').toString());
+    }
+  }
+
+  private static void writeJson(List<IntervalSnapshot> timeline, Writer writer) throws IOException {
+    List<Document> intervals = new ArrayList<>();
+    for (IntervalSnapshot snapshot : timeline) {
+      Document latencies = new Document();
+      for (Map.Entry<String, LatencySummary> entry : snapshot.getLatencySeries().entrySet()) {
+        LatencySummary latency = entry.getValue();
+        latencies.append(
+            entry.getKey(),
+            new Document("count", latency.getCount())
+                .append("min", latency.getMin())
+                .append("max", latency.getMax())
+                .append("mean", latency.getMean())
+                .append("p50", latency.getP50())
+                .append("p95", latency.getP95())
+                .append("p99", latency.getP99())
+                .append("p999", latency.getP999())
+                .append("p9999", latency.getP9999()));
+      }
+      intervals.add(
+          new Document("timestamp", snapshot.getTimestampMillis())
+              .append("elapsedSec", snapshot.getElapsedSeconds())
+              .append("intervalSec", snapshot.getIntervalSeconds())
+              .append("operations", snapshot.getOperations())
+              .append("errors", snapshot.getErrors())
+              .append("opsPerSec", snapshot.getThroughput())
+              .append("latencyUs", latencies));
+    }
+    writer.write(
+        new Document("intervals", intervals)
+            .toJson(
+                JsonWriterSettings.builder().outputMode(JsonMode.RELAXED).indent(true).build()));
+  }
+}
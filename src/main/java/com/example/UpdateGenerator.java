@@ -0,0 +1,117 @@
+package com.example;
+
+import com.mongodb.MongoClientSettings;
+import java.util.SplittableRandom;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.Codec;
+import org.bson.io.BasicOutputBuffer;
+
+/**
+ * Builds run-phase update documents in the shapes of an {@link UpdateMix}. Apart from FULL, which
+ * cuts its $set out of a whole generated document, each shape generates only the values it sets and
+ * writes them straight into BSON. Every update is returned encoded, so its size is known and the
+ * driver sends the bytes as they are. Not thread-safe: the output buffer is reused across calls.
+ */
+public class UpdateGenerator {
+  private static final Codec<Document> DOCUMENT_CODEC =
+      MongoClientSettings.getDefaultCodecRegistry().get(Document.class);
+  private static final BsonDocumentCodec BSON_DOCUMENT_CODEC = new BsonDocumentCodec();
+
+  private final UpdateMix mix;
+  private final ValueSource values;
+  private final int targetDocumentSize;
+  private final boolean rawDocuments;
+  private final SplittableRandom random;
+  // Writes whole raw documents for FULL, and single sub-documents for the other shapes
+  private final RawDocumentGenerator rawGenerator;
+  private final BasicOutputBuffer buffer = new BasicOutputBuffer(1024);
+
+  public UpdateGenerator(
+      UpdateMix mix,
+      ValueSource values,
+      int targetDocumentSize,
+      boolean rawDocuments,
+      SplittableRandom random) {
+    this.mix = mix;
+    this.values = values;
+    this.targetDocumentSize = targetDocumentSize;
+    this.rawDocuments = rawDocuments;
+    this.random = random;
+    this.rawGenerator = new RawDocumentGenerator(values, targetDocumentSize);
+  }
+
+  /** An update of {@code key} in the next shape drawn from the mix. */
+  public RawBsonDocument generate(long key) {
+    UpdateShape shape = mix.next(random);
+    RawBsonDocument update = shape == UpdateShape.FULL ? full(key) : write(shape);
+    mix.record(shape, update.getByteBuffer().remaining());
+    return update;
+  }
+
+  private RawBsonDocument full(long key) {
+    if (rawDocuments) {
+      RawBsonDocument updateDoc = rawGenerator.generate(key);
+      return new RawBsonDocument(
+          new BsonDocument(
+              "$set",
+              new BsonDocument("timestamp", updateDoc.get("timestamp"))
+                  .append("user", updateDoc.get("user"))
+                  .append("order", updateDoc.get("order"))
+                  .append("metadata", updateDoc.get("metadata"))),
+          BSON_DOCUMENT_CODEC);
+    }
+    Document updateDoc = DocumentGenerator.generateRichDocument(values, key, targetDocumentSize);
+    return new RawBsonDocument(
+        new Document(
+            "$set",
+            new Document("timestamp", updateDoc.getLong("timestamp"))
+                .append("user", updateDoc.get("user"))
+                .append("order", updateDoc.get("order"))
+                .append("metadata", updateDoc.get("metadata"))),
+        DOCUMENT_CODEC);
+  }
+
+  private RawBsonDocument write(UpdateShape shape) {
+    buffer.truncateToPosition(0);
+    try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+      writer.writeStartDocument();
+      switch (shape) {
+        case INC:
+          writer.writeStartDocument("$inc");
+          writer.writeInt32("product.inStock", values.intBetween(-10, 11));
+          writer.writeEndDocument();
+          break;
+        case SET:
+          writer.writeStartDocument("$set");
+          writer.writeString(
+              "order.status",
+              values.option("pending", "processing", "shipped", "delivered", "cancelled"));
+          writer.writeEndDocument();
+          break;
+        case PUSH:
+          writer.writeStartDocument("$push");
+          writer.writeStartDocument("comments");
+          writer.writeStartArray("$each");
+          rawGenerator.writeComment(writer, false);
+          writer.writeEndArray();
+          writer.writeInt32("$slice", -mix.getPushSlice());
+          writer.writeEndDocument();
+          writer.writeEndDocument();
+          break;
+        case SUBDOC:
+          writer.writeStartDocument("$set");
+          rawGenerator.writeAddress(writer, "user.address");
+          writer.writeEndDocument();
+          break;
+        default:
+          throw new IllegalArgumentException("Not a field-level update shape: " + shape);
+      }
+      writer.writeEndDocument();
+    }
+    return new RawBsonDocument(buffer.toByteArray());
+  }
+}
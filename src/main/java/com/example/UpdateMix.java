@@ -0,0 +1,115 @@
+package com.example;
+
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The weighted mix of {@link UpdateShape}s that run-phase updates are drawn from, shared by all
+ * workers, and the count and encoded size of the updates sent in each shape. Sizes are those of the
+ * update document itself, as it goes on the wire.
+ */
+public class UpdateMix implements MetricsReporter {
+  private static final UpdateShape[] SHAPES = UpdateShape.values();
+
+  // Cumulative weights, indexed by shape ordinal
+  private final int[] thresholds = new int[SHAPES.length];
+  private final int totalWeight;
+  // Set when the mix has a single shape
+  private final UpdateShape onlyShape;
+  private final int pushSlice;
+  private final LongAdder[] updates = new LongAdder[SHAPES.length];
+  private final LongAdder[] bytes = new LongAdder[SHAPES.length];
+  private long reportedUpdates;
+  private long reportedBytes;
+
+  public UpdateMix(Map<UpdateShape, Integer> weights, int pushSlice) {
+    int total = 0;
+    int weightedShapes = 0;
+    UpdateShape lastWeighted = null;
+    for (UpdateShape shape : SHAPES) {
+      int weight = weights.getOrDefault(shape, 0);
+      if (weight > 0) {
+        weightedShapes++;
+        lastWeighted = shape;
+      }
+      total += weight;
+      thresholds[shape.ordinal()] = total;
+      updates[shape.ordinal()] = new LongAdder();
+      bytes[shape.ordinal()] = new LongAdder();
+    }
+    this.totalWeight = total;
+    this.onlyShape = weightedShapes == 1 ? lastWeighted : null;
+    this.pushSlice = pushSlice;
+  }
+
+  public UpdateShape next(SplittableRandom random) {
+    if (onlyShape != null) {
+      // Leaves the caller's random sequence as it was before update shapes existed
+      return onlyShape;
+    }
+    int value = random.nextInt(totalWeight);
+    for (UpdateShape shape : SHAPES) {
+      if (value < thresholds[shape.ordinal()]) {
+        return shape;
+      }
+    }
+    throw new IllegalStateException("No update shape for " + value);
+  }
+
+  /** How many comments a PUSH update keeps, newest last. */
+  public int getPushSlice() {
+    return pushSlice;
+  }
+
+  public void record(UpdateShape shape, int sizeBytes) {
+    updates[shape.ordinal()].increment();
+    bytes[shape.ordinal()].add(sizeBytes);
+  }
+
+  @Override
+  public String intervalReport(double intervalSeconds) {
+    long updateCount = sum(updates);
+    long byteCount = sum(bytes);
+    long intervalUpdates = updateCount - reportedUpdates;
+    long intervalBytes = byteCount - reportedBytes;
+    reportedUpdates = updateCount;
+    reportedBytes = byteCount;
+    return String.format(
+        "[UPDATE-SIZE: Count=%d, AvgBytes=%.1f, KB/sec=%.1f]",
+        intervalUpdates,
+        intervalUpdates > 0 ? intervalBytes / (double) intervalUpdates : 0,
+        intervalSeconds > 0 ? intervalBytes / 1024.0 / intervalSeconds : 0);
+  }
+
+  @Override
+  public void printFinalReport() {
+    long updateCount = sum(updates);
+    System.out.println("[UPDATE-SIZE], Updates, " + updateCount);
+    System.out.println(
+        "[UPDATE-SIZE], AverageBytes, " + String.format("%.2f", average(sum(bytes), updateCount)));
+    for (UpdateShape shape : SHAPES) {
+      long shapeUpdates = updates[shape.ordinal()].sum();
+      if (shapeUpdates > 0) {
+        System.out.println("[UPDATE-SIZE], Updates(" + shape.getLabel() + "), " + shapeUpdates);
+        System.out.println(
+            "[UPDATE-SIZE], AverageBytes("
+                + shape.getLabel()
+                + "), "
+                + String.format("%.2f", average(bytes[shape.ordinal()].sum(), shapeUpdates)));
+      }
+    }
+  }
+
+  private static long sum(LongAdder[] adders) {
+    long total = 0;
+    for (LongAdder adder : adders) {
+      total += adder.sum();
+    }
+    return total;
+  }
+
+  private static double average(long total, long count) {
+    return count > 0 ? total / (double) count : 0;
+  }
+}
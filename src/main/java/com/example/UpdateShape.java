@@ -0,0 +1,51 @@
+package com.example;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/** What a run-phase update changes in the document it targets. */
+public enum UpdateShape {
+  // $set of freshly generated timestamp, user, order and metadata, cut from a whole rich document
+  FULL("full"),
+  // $inc of one counter
+  INC("inc"),
+  // $set of one scalar field
+  SET("set"),
+  // $push of one comment, keeping only the newest UPDATE_PUSH_SLICE
+  PUSH("push"),
+  // $set of one whole sub-document
+  SUBDOC("subdoc");
+
+  private final String label;
+
+  UpdateShape(String label) {
+    this.label = label;
+  }
+
+  // Name used in UPDATE_MIX and in the report lines
+  public String getLabel() {
+    return label;
+  }
+
+  /**
+   * Parses UPDATE_MIX values such as "inc=50,set=30,push=20" into relative weights. A bare shape
+   * name, e.g. "subdoc", means only that shape.
+   */
+  public static Map<UpdateShape, Integer> parseMix(String value) {
+    Map<UpdateShape, Integer> mix = new EnumMap<>(UpdateShape.class);
+    for (String entry : value.split(",")) {
+      String[] parts = entry.split("=", 2);
+      UpdateShape shape = valueOf(parts[0].trim().toUpperCase(Locale.ROOT));
+      int weight = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1;
+      if (weight < 0) {
+        throw new IllegalArgumentException("Negative weight in UPDATE_MIX: " + entry);
+      }
+      mix.merge(shape, weight, Integer::sum);
+    }
+    if (mix.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+      throw new IllegalArgumentException("UPDATE_MIX has no positive weight: " + value);
+    }
+    return mix;
+  }
+}
@@ -0,0 +1,127 @@
+package com.example;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import net.datafaker.Faker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Faker-generated values computed once at startup and shared read-only by all generator threads.
+ * Each string field gets {@code size} candidates (fewer where Faker's own vocabulary is smaller),
+ * so field cardinality stays realistic without calling Faker per document. Entry {@code i} of a
+ * field depends only on the seed, so the pool is the same however it is built.
+ */
+public class ValuePool {
+  private static final Logger logger = LoggerFactory.getLogger(ValuePool.class);
+  private static final ThreadLocal<Random> RANDOMS = ThreadLocal.withInitial(Random::new);
+  private static final ThreadLocal<Faker> FAKERS =
+      ThreadLocal.withInitial(() -> new Faker(new Locale("en-US"), RANDOMS.get()));
+  private static final int PADDING_SOURCE_LENGTH = 256 * 1024;
+
+  final String[] firstNames;
+  final String[] lastNames;
+  final String[] emails;
+  final String[] phoneNumbers;
+  final String[] streetAddresses;
+  final String[] cities;
+  final String[] states;
+  final String[] countries;
+  final String[] zipCodes;
+  final String[] latitudes;
+  final String[] longitudes;
+  final String[] timeZones;
+  final String[] languages;
+  final String[] currencyCodes;
+  final String[] productNames;
+  final String[] paragraphs;
+  final String[] departments;
+  final String[] materials;
+  final String[] colorNames;
+  final String[] userAgents;
+  final String[] ipV4Addresses;
+  final String[] urls;
+  final String[] words;
+  final String[] usernames;
+  final String[] sentences;
+  final String paddingSource;
+
+  private final int size;
+  private final boolean parallel;
+  private final long seed;
+  private int fieldCount;
+
+  private ValuePool(int size, boolean parallel, long seed) {
+    this.size = size;
+    this.parallel = parallel;
+    this.seed = seed;
+    firstNames = strings(faker -> faker.name().firstName());
+    lastNames = strings(faker -> faker.name().lastName());
+    emails = strings(faker -> faker.internet().emailAddress());
+    phoneNumbers = strings(faker -> faker.phoneNumber().phoneNumber());
+    streetAddresses = strings(faker -> faker.address().streetAddress());
+    cities = strings(faker -> faker.address().city());
+    states = strings(faker -> faker.address().state());
+    countries = strings(faker -> faker.address().country());
+    zipCodes = strings(faker -> faker.address().zipCode());
+    latitudes = strings(faker -> faker.address().latitude());
+    longitudes = strings(faker -> faker.address().longitude());
+    timeZones = strings(faker -> faker.address().timeZone());
+    languages = strings(faker -> faker.nation().language());
+    currencyCodes = strings(faker -> faker.currency().code());
+    productNames = strings(faker -> faker.commerce().productName());
+    paragraphs = strings(faker -> faker.lorem().paragraph());
+    departments = strings(faker -> faker.commerce().department());
+    materials = strings(faker -> faker.commerce().material());
+    colorNames = strings(faker -> faker.color().name());
+    userAgents = strings(faker -> faker.internet().userAgent());
+    ipV4Addresses = strings(faker -> faker.internet().ipV4Address());
+    urls = strings(faker -> faker.internet().url());
+    words = strings(faker -> faker.lorem().word());
+    usernames = strings(faker -> faker.internet().username());
+    sentences = strings(faker -> faker.lorem().sentence());
+    paddingSource =
+        randomAlphanumeric(PADDING_SOURCE_LENGTH, new SplittableRandom(Seeds.mix(seed, -1)));
+  }
+
+  /**
+   * Builds a pool with {@code size} candidates per field.
+   *
+   * @param parallel generate on the common fork-join pool instead of the calling thread
+   * @param seed determines every value in the pool
+   */
+  public static ValuePool build(int size, boolean parallel, long seed) {
+    long startTime = System.nanoTime();
+    ValuePool pool = new ValuePool(size, parallel, seed);
+    logger.info(
+        "Built value pool of {} entries per field in {} ms",
+        size,
+        (System.nanoTime() - startTime) / 1_000_000);
+    return pool;
+  }
+
+  private String[] strings(Function<Faker, String> generator) {
+    long fieldSeed = Seeds.mix(seed, fieldCount++);
+    IntStream range = IntStream.range(0, size);
+    // Interning collapses Faker's small vocabularies (states, currencies, ...) to shared strings
+    return (parallel ? range.parallel() : range)
+        .mapToObj(
+            i -> {
+              RANDOMS.get().setSeed(Seeds.mix(fieldSeed, i));
+              return generator.apply(FAKERS.get()).intern();
+            })
+        .toArray(String[]::new);
+  }
+
+  private static String randomAlphanumeric(int length, SplittableRandom random) {
+    String alphabet = "abcdefghijklmnopqrstuvwxyz0123456789";
+    StringBuilder source = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      source.append(alphabet.charAt(random.nextInt(alphabet.length())));
+    }
+    return source.toString();
+  }
+}
@@ -0,0 +1,102 @@
+package com.example;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Field values for generated documents. {@link FakerValueSource} calls DataFaker for every value;
+ * {@link PooledValueSource} picks from values precomputed at startup. Instances are used by one
+ * thread at a time.
+ */
+public interface ValueSource {
+  long MIN_AGE_MILLIS = 18 * 365L * 24 * 60 * 60 * 1000;
+  long MAX_AGE_MILLIS = 65 * 365L * 24 * 60 * 60 * 1000;
+
+  /** Restarts the value stream, so the values that follow depend only on {@code seed}. */
+  void reseed(long seed);
+
+  /** Reference time for generated timestamps; fixed when runs must be reproducible. */
+  Instant now();
+
+  String firstName();
+
+  String lastName();
+
+  String email();
+
+  String phoneNumber();
+
+  String streetAddress();
+
+  String city();
+
+  String state();
+
+  String country();
+
+  String zipCode();
+
+  String latitude();
+
+  String longitude();
+
+  String timeZone();
+
+  /** Epoch millis of a date of birth 18 to 65 years before {@link #now()}. */
+  default long birthday() {
+    return now().toEpochMilli() - longBetween(MIN_AGE_MILLIS, MAX_AGE_MILLIS);
+  }
+
+  String language();
+
+  String currencyCode();
+
+  String productName();
+
+  String paragraph();
+
+  String department();
+
+  String material();
+
+  String colorName();
+
+  String userAgent();
+
+  String ipV4Address();
+
+  String url();
+
+  String word();
+
+  String username();
+
+  String sentence();
+
+  String uuid();
+
+  /** A string of {@code count} random decimal digits. */
+  String digits(int count);
+
+  /** Random lowercase alphanumeric ASCII, so its BSON size equals its length. */
+  String padding(int length);
+
+  boolean nextBoolean();
+
+  /** Uniform in [min, max). */
+  int intBetween(int min, int max);
+
+  /** Uniform in [min, max). */
+  long longBetween(long min, long max);
+
+  /** Uniform in [min, max], rounded to {@code decimals} places. */
+  double randomDouble(int decimals, int min, int max);
+
+  String option(String... options);
+
+  /** Formats two random longs as a version 4 (random), IETF variant UUID. */
+  static String randomUuid(long mostSigBits, long leastSigBits) {
+    return new UUID((mostSigBits & ~0xF000L) | 0x4000L, (leastSigBits >>> 2) | (1L << 63))
+        .toString();
+  }
+}
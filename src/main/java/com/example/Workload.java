@@ -0,0 +1,162 @@
+package com.example;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * The operations the run phase draws from, as relative weights per {@link OperationType}, and the
+ * longest SCAN. WORKLOAD=a..f selects one of YCSB's core workloads, including its request
+ * distribution. Otherwise WRITE_PERCENTAGE splits reads and updates. Either way, any {@code
+ * <OP>_PROPORTION} variable overrides the weight of that operation.
+ */
+public class Workload {
+  // UPDATE first, so runs configured by WRITE_PERCENTAGE draw the same operations as before
+  private static final OperationType[] DRAW_ORDER = {
+    OperationType.UPDATE,
+    OperationType.READ,
+    OperationType.INSERT,
+    OperationType.SCAN,
+    OperationType.READ_MODIFY_WRITE,
+    OperationType.DELETE
+  };
+  // Proportions are kept to three decimal places
+  private static final int PROPORTION_SCALE = 1000;
+
+  private final String name;
+  private final Map<OperationType, Integer> weights;
+  private final int[] thresholds = new int[DRAW_ORDER.length];
+  private final int maxScanLength;
+  // YCSB's requestdistribution for a preset, null for a custom workload
+  private final String keyDistribution;
+
+  private Workload(
+      String name, Map<OperationType, Integer> weights, int maxScanLength, String keyDistribution) {
+    this.name = name;
+    this.weights = Collections.unmodifiableMap(weights);
+    this.maxScanLength = maxScanLength;
+    this.keyDistribution = keyDistribution;
+    int total = 0;
+    for (int i = 0; i < DRAW_ORDER.length; i++) {
+      total += weights.getOrDefault(DRAW_ORDER[i], 0);
+      thresholds[i] = total;
+    }
+    if (total <= 0) {
+      throw new IllegalArgumentException("Workload " + name + " has no operations");
+    }
+  }
+
+  public static Workload fromEnv(Map<String, String> env, int writePercentage) {
+    String preset = env.getOrDefault("WORKLOAD", "").trim().toLowerCase(Locale.ROOT);
+    Map<OperationType, Double> proportions = new EnumMap<>(OperationType.class);
+    String keyDistribution = null;
+    switch (preset) {
+      case "":
+        break;
+      case "a": // Update heavy: session store recording recent actions
+        proportions.put(OperationType.READ, 0.5);
+        proportions.put(OperationType.UPDATE, 0.5);
+        keyDistribution = "zipfian";
+        break;
+      case "b": // Read mostly: photo tagging
+        proportions.put(OperationType.READ, 0.95);
+        proportions.put(OperationType.UPDATE, 0.05);
+        keyDistribution = "zipfian";
+        break;
+      case "c": // Read only: user profile cache
+        proportions.put(OperationType.READ, 1.0);
+        keyDistribution = "zipfian";
+        break;
+      case "d": // Read latest: user status updates
+        proportions.put(OperationType.READ, 0.95);
+        proportions.put(OperationType.INSERT, 0.05);
+        keyDistribution = "latest";
+        break;
+      case "e": // Short ranges: threaded conversations
+        proportions.put(OperationType.SCAN, 0.95);
+        proportions.put(OperationType.INSERT, 0.05);
+        keyDistribution = "zipfian";
+        break;
+      case "f": // Read-modify-write: user database
+        proportions.put(OperationType.READ, 0.5);
+        proportions.put(OperationType.READ_MODIFY_WRITE, 0.5);
+        keyDistribution = "zipfian";
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown WORKLOAD " + preset + "; expected a to f");
+    }
+
+    boolean overridden = false;
+    for (OperationType type : OperationType.values()) {
+      String value = env.get(type.name() + "_PROPORTION");
+      if (value != null) {
+        proportions.put(type, Double.parseDouble(value));
+        overridden = true;
+      }
+    }
+    int maxScanLength = Integer.parseInt(env.getOrDefault("MAX_SCAN_LENGTH", "100"));
+
+    Map<OperationType, Integer> weights = new EnumMap<>(OperationType.class);
+    if (preset.isEmpty() && !overridden) {
+      weights.put(OperationType.READ, 100 - writePercentage);
+      weights.put(OperationType.UPDATE, writePercentage);
+      return new Workload("custom", weights, maxScanLength, null);
+    }
+    if (preset.isEmpty()) {
+      // Overrides apply on top of the WRITE_PERCENTAGE split
+      proportions.putIfAbsent(OperationType.READ, (100 - writePercentage) / 100.0);
+      proportions.putIfAbsent(OperationType.UPDATE, writePercentage / 100.0);
+    }
+    proportions.forEach(
+        (type, proportion) -> weights.put(type, (int) Math.round(proportion * PROPORTION_SCALE)));
+    return new Workload(
+        preset.isEmpty() ? "custom" : preset.toUpperCase(Locale.ROOT),
+        weights,
+        maxScanLength,
+        keyDistribution);
+  }
+
+  public OperationType next(SplittableRandom random) {
+    int value = random.nextInt(thresholds[thresholds.length - 1]);
+    for (int i = 0; i < DRAW_ORDER.length; i++) {
+      if (value < thresholds[i]) {
+        return DRAW_ORDER[i];
+      }
+    }
+    throw new IllegalStateException("No operation for " + value);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /** Operation types with a non-zero weight. */
+  public Set<OperationType> getOperationTypes() {
+    Set<OperationType> types = EnumSet.noneOf(OperationType.class);
+    weights.forEach(
+        (type, weight) -> {
+          if (weight > 0) {
+            types.add(type);
+          }
+        });
+    return types;
+  }
+
+  /** Share of operations of this type, in percent. */
+  public double getPercentage(OperationType type) {
+    return 100.0 * weights.getOrDefault(type, 0) / thresholds[thresholds.length - 1];
+  }
+
+  public int getMaxScanLength() {
+    return maxScanLength;
+  }
+
+  /** The preset's key distribution, used unless KEY_DISTRIBUTION is set; "uniform" if custom. */
+  public String getKeyDistribution() {
+    return keyDistribution != null ? keyDistribution : "uniform";
+  }
+}
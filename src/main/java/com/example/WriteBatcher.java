@@ -0,0 +1,143 @@
+package com.example;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends the run phase's updates as unordered {@code bulkWrite} calls, the way ingest services batch
+ * their writes. Each worker collects its own requests and flushes them with {@link #write} when it
+ * has {@code batchSize} of them or the oldest has waited the flush interval. Callers record each
+ * request's latency as UPDATE; the round-trips themselves are reported as UPDATE-BATCH, with
+ * throughput as both operations and batches per second.
+ */
+public class WriteBatcher implements MetricsReporter {
+  private static final Logger logger = LoggerFactory.getLogger(WriteBatcher.class);
+  private static final String LABEL = "UPDATE-BATCH";
+  private static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
+  private static final ReplaceOptions REPLACE_UPSERT = new ReplaceOptions().upsert(true);
+  private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+
+  private final MongoCollection<BsonDocument> collection;
+  private final int batchSize;
+  private final long flushIntervalNanos;
+  private final boolean replace;
+  private final LatencyHistogram batchLatency = new LatencyHistogram();
+  private final LongAdder batches = new LongAdder();
+  private final LongAdder operations = new LongAdder();
+  private final LongAdder failedOperations = new LongAdder();
+  private final long startTime = System.nanoTime();
+  private long reportedBatches;
+  private long reportedOperations;
+
+  public WriteBatcher(MongoCollection<Document> collection, Config config) {
+    this.collection = collection.withDocumentClass(BsonDocument.class);
+    this.batchSize = config.getWriteBatchSize();
+    this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(config.getWriteBatchFlushMillis());
+    this.replace = config.isWriteBatchReplace();
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public long getFlushIntervalNanos() {
+    return flushIntervalNanos;
+  }
+
+  /** The upsert of {@code key}, as a $set update or as a replacement of the whole document. */
+  public WriteModel<BsonDocument> request(OperationGenerator generator, long key) {
+    if (replace) {
+      return new ReplaceOneModel<>(generator.filter(key), generator.document(key), REPLACE_UPSERT);
+    }
+    return new UpdateOneModel<>(generator.filter(key), generator.update(key), UPSERT);
+  }
+
+  /**
+   * Writes {@code requests} in one unordered bulkWrite and returns the positions of those that
+   * failed. The server applies every request it can, so a partial failure only fails the requests
+   * it names. Errors that fail the whole call are thrown.
+   */
+  public BitSet write(List<WriteModel<BsonDocument>> requests) {
+    BitSet failed = new BitSet(requests.size());
+    long start = System.nanoTime();
+    try {
+      collection.bulkWrite(requests, UNORDERED);
+    } catch (MongoBulkWriteException e) {
+      e.getWriteErrors().forEach(error -> failed.set(error.getIndex()));
+      logger.error(
+          "Bulk write failed for {} of {} requests: {}",
+          failed.cardinality(),
+          requests.size(),
+          e.getMessage());
+    } finally {
+      batchLatency.recordNanos(System.nanoTime() - start);
+    }
+    batches.increment();
+    operations.add(requests.size() - failed.cardinality());
+    failedOperations.add(failed.cardinality());
+    return failed;
+  }
+
+  @Override
+  public String intervalReport(double intervalSeconds) {
+    long batchCount = batches.sum();
+    long operationCount = operations.sum();
+    String line =
+        MetricsManager.formatIntervalStats(LABEL, LatencySummary.of(batchLatency.sampleInterval()))
+            + String.format(
+                " [%s-RATE: Ops/sec=%.1f, Batches/sec=%.1f]",
+                LABEL,
+                perSecond(operationCount - reportedOperations, intervalSeconds),
+                perSecond(batchCount - reportedBatches, intervalSeconds));
+    reportedBatches = batchCount;
+    reportedOperations = operationCount;
+    return line;
+  }
+
+  @Override
+  public void printFinalReport() {
+    long batchCount = batches.sum();
+    long operationCount = operations.sum();
+    double seconds = (System.nanoTime() - startTime) / 1e9;
+    MetricsManager.printLatencyReport(
+        LABEL, batchCount, LatencySummary.of(batchLatency.getCumulative()));
+    String label = "[" + LABEL + "], ";
+    System.out.println(label + "Model, " + (replace ? "replace" : "update"));
+    System.out.println(label + "MaxOps, " + batchSize);
+    System.out.println(
+        label
+            + "AverageOps, "
+            + String.format(
+                "%.2f",
+                batchCount > 0
+                    ? (operationCount + failedOperations.sum()) / (double) batchCount
+                    : 0));
+    System.out.println(
+        label
+            + "Throughput(ops/sec), "
+            + String.format("%.2f", perSecond(operationCount, seconds)));
+    System.out.println(
+        label
+            + "Throughput(batches/sec), "
+            + String.format("%.2f", perSecond(batchCount, seconds)));
+    System.out.println(label + "FailedOps, " + failedOperations.sum());
+  }
+
+  private static double perSecond(long count, double seconds) {
+    return seconds > 0 ? count / seconds : 0;
+  }
+}
@@ -0,0 +1,30 @@
+package com.example.keys;
+
+import java.util.SplittableRandom;
+
+/**
+ * A hot set made of the first {@code hotsetFraction} of keys receives {@code hotOpnFraction} of the
+ * operations. Keys are uniform within the hot set and within the cold remainder.
+ */
+public class HotspotKeyChooser implements KeyChooser {
+  private final long hotsetSize;
+  private final long coldsetSize;
+  private final double hotOpnFraction;
+  private final SplittableRandom random;
+
+  public HotspotKeyChooser(
+      long recordCount, double hotsetFraction, double hotOpnFraction, SplittableRandom random) {
+    this.hotsetSize = Math.max(1, Math.min(recordCount, (long) (recordCount * hotsetFraction)));
+    this.coldsetSize = recordCount - hotsetSize;
+    this.hotOpnFraction = hotOpnFraction;
+    this.random = random;
+  }
+
+  @Override
+  public long nextKey() {
+    if (coldsetSize == 0 || random.nextDouble() < hotOpnFraction) {
+      return random.nextLong(hotsetSize);
+    }
+    return hotsetSize + random.nextLong(coldsetSize);
+  }
+}
@@ -0,0 +1,9 @@
+package com.example.keys;
+
+/**
+ * Picks the {@code index} value of the next document to operate on. Instances are owned by one
+ * worker thread and are not thread-safe.
+ */
+public interface KeyChooser {
+  long nextKey();
+}
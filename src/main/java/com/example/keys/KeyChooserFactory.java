@@ -0,0 +1,72 @@
+package com.example.keys;
+
+import java.util.SplittableRandom;
+import java.util.function.LongSupplier;
+
+/**
+ * Builds one {@link KeyChooser} per worker thread. Anything expensive, such as the Zipfian zeta
+ * constant, is computed once here and shared; each chooser gets its own random stream so key
+ * selection never contends across threads.
+ */
+public class KeyChooserFactory {
+  private final KeyDistribution distribution;
+  private final LongSupplier recordCount;
+  private final double zipfianConstant;
+  private final double hotsetFraction;
+  private final double hotOpnFraction;
+  private final SplittableRandom root;
+  // Record count when the factory was built, and the zeta constant for it
+  private final long initialCount;
+  private final double zetan;
+
+  public KeyChooserFactory(
+      KeyDistribution distribution,
+      LongSupplier recordCount,
+      double zipfianConstant,
+      double hotsetFraction,
+      double hotOpnFraction,
+      SplittableRandom root) {
+    this.initialCount = recordCount.getAsLong();
+    if (initialCount <= 0) {
+      throw new IllegalArgumentException("Key space is empty; nothing has been loaded");
+    }
+    this.distribution = distribution;
+    this.recordCount = recordCount;
+    this.zipfianConstant = zipfianConstant;
+    this.hotsetFraction = hotsetFraction;
+    this.hotOpnFraction = hotOpnFraction;
+    this.root = root;
+    switch (distribution) {
+      case ZIPFIAN:
+      case LATEST:
+        this.zetan = ZipfianKeyChooser.zeta(initialCount, zipfianConstant);
+        break;
+      case SCRAMBLED_ZIPFIAN:
+        this.zetan = ZipfianKeyChooser.zeta(ScrambledZipfianKeyChooser.ITEM_COUNT, zipfianConstant);
+        break;
+      default:
+        this.zetan = 0;
+    }
+  }
+
+  public KeyDistribution getDistribution() {
+    return distribution;
+  }
+
+  /** Creates a chooser for one thread. Call from a single thread, e.g. while submitting workers. */
+  public KeyChooser create() {
+    SplittableRandom random = root.split();
+    switch (distribution) {
+      case ZIPFIAN:
+        return new ZipfianKeyChooser(initialCount, zipfianConstant, zetan, random);
+      case SCRAMBLED_ZIPFIAN:
+        return new ScrambledZipfianKeyChooser(initialCount, zipfianConstant, zetan, random);
+      case HOTSPOT:
+        return new HotspotKeyChooser(initialCount, hotsetFraction, hotOpnFraction, random);
+      case LATEST:
+        return new LatestKeyChooser(recordCount, initialCount, zipfianConstant, zetan, random);
+      default:
+        return new UniformKeyChooser(recordCount, random);
+    }
+  }
+}
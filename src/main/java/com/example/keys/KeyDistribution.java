@@ -0,0 +1,16 @@
+package com.example.keys;
+
+import java.util.Locale;
+
+public enum KeyDistribution {
+  UNIFORM,
+  ZIPFIAN,
+  SCRAMBLED_ZIPFIAN,
+  HOTSPOT,
+  LATEST;
+
+  /** Parses KEY_DISTRIBUTION values such as "zipfian" or "scrambled-zipfian". */
+  public static KeyDistribution parse(String value) {
+    return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+  }
+}
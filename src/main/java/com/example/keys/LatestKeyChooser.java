@@ -0,0 +1,32 @@
+package com.example.keys;
+
+import java.util.SplittableRandom;
+import java.util.function.LongSupplier;
+
+/**
+ * Favors the most recently inserted keys: the newest key is the most popular and popularity falls
+ * off as a Zipfian with age, as in YCSB's "latest" distribution.
+ */
+public class LatestKeyChooser implements KeyChooser {
+  private final LongSupplier recordCount;
+  private final ZipfianKeyChooser zipfian;
+
+  /**
+   * @param zetan Zipfian zeta constant for {@code initialCount} items
+   */
+  public LatestKeyChooser(
+      LongSupplier recordCount,
+      long initialCount,
+      double theta,
+      double zetan,
+      SplittableRandom random) {
+    this.recordCount = recordCount;
+    this.zipfian = new ZipfianKeyChooser(initialCount, theta, zetan, random);
+  }
+
+  @Override
+  public long nextKey() {
+    long count = recordCount.getAsLong();
+    return count - 1 - zipfian.nextKey(count);
+  }
+}
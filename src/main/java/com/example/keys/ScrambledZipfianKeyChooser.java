@@ -0,0 +1,39 @@
+package com.example.keys;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zipfian popularity with the popular keys spread across the key space instead of clustered at the
+ * low end. As in YCSB, draws come from a fixed 10 billion item Zipfian and are hashed into [0,
+ * recordCount).
+ */
+public class ScrambledZipfianKeyChooser implements KeyChooser {
+  static final long ITEM_COUNT = 10_000_000_000L;
+
+  private static final long FNV_OFFSET_BASIS_64 = 0xCBF29CE484222325L;
+  private static final long FNV_PRIME_64 = 1099511628211L;
+
+  private final ZipfianKeyChooser zipfian;
+  private final long recordCount;
+
+  public ScrambledZipfianKeyChooser(
+      long recordCount, double theta, double itemCountZetan, SplittableRandom random) {
+    this.zipfian = new ZipfianKeyChooser(ITEM_COUNT, theta, itemCountZetan, random);
+    this.recordCount = recordCount;
+  }
+
+  @Override
+  public long nextKey() {
+    return Math.floorMod(fnvHash64(zipfian.nextKey()), recordCount);
+  }
+
+  static long fnvHash64(long value) {
+    long hash = FNV_OFFSET_BASIS_64;
+    for (int i = 0; i < 8; i++) {
+      hash ^= value & 0xFF;
+      hash *= FNV_PRIME_64;
+      value >>>= 8;
+    }
+    return hash;
+  }
+}
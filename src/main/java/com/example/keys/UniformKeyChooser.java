@@ -0,0 +1,20 @@
+package com.example.keys;
+
+import java.util.SplittableRandom;
+import java.util.function.LongSupplier;
+
+/** Every key in [0, recordCount) is equally likely. */
+public class UniformKeyChooser implements KeyChooser {
+  private final LongSupplier recordCount;
+  private final SplittableRandom random;
+
+  public UniformKeyChooser(LongSupplier recordCount, SplittableRandom random) {
+    this.recordCount = recordCount;
+    this.random = random;
+  }
+
+  @Override
+  public long nextKey() {
+    return random.nextLong(recordCount.getAsLong());
+  }
+}
@@ -0,0 +1,93 @@
+package com.example.keys;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zipfian distribution over [0, itemCount), using the algorithm from Gray et al., "Quickly
+ * Generating Billion-Record Synthetic Databases" (the same one YCSB uses). Key 0 is the most
+ * popular, key 1 the next, and so on.
+ */
+public class ZipfianKeyChooser implements KeyChooser {
+  public static final double DEFAULT_ZIPFIAN_CONSTANT = 0.99;
+
+  // Sum the zeta series exactly up to here and use the Euler-Maclaurin tail beyond it
+  private static final long EXACT_ZETA_LIMIT = 1L << 20;
+
+  private final double theta;
+  private final double alpha;
+  private final double zeta2theta;
+  private final SplittableRandom random;
+  private long itemCount;
+  private double zetan;
+  private double eta;
+
+  /**
+   * @param zetan {@link #zeta(long, double)} of itemCount, computed once and shared by every
+   *     thread's chooser
+   */
+  public ZipfianKeyChooser(long itemCount, double theta, double zetan, SplittableRandom random) {
+    this.theta = theta;
+    this.alpha = 1.0 / (1.0 - theta);
+    this.zeta2theta = zeta(2, theta);
+    this.random = random;
+    this.itemCount = itemCount;
+    this.zetan = zetan;
+    this.eta = eta();
+  }
+
+  @Override
+  public long nextKey() {
+    double u = random.nextDouble();
+    double uz = u * zetan;
+    if (uz < 1.0) {
+      return 0;
+    }
+    if (uz < 1.0 + Math.pow(0.5, theta)) {
+      return 1;
+    }
+    long key = (long) (itemCount * Math.pow(eta * u - eta + 1, alpha));
+    return Math.min(key, itemCount - 1);
+  }
+
+  /** Draws from a key space that has grown to {@code newItemCount} since the last call. */
+  long nextKey(long newItemCount) {
+    if (newItemCount > itemCount) {
+      zetan = zetan + zetaRange(itemCount, newItemCount, theta);
+      itemCount = newItemCount;
+      eta = eta();
+    }
+    return nextKey();
+  }
+
+  private double eta() {
+    return (1 - Math.pow(2.0 / itemCount, 1 - theta)) / (1 - zeta2theta / zetan);
+  }
+
+  /** Sum of 1/i^theta for i in [1, n]. */
+  public static double zeta(long n, double theta) {
+    return zetaRange(0, n, theta);
+  }
+
+  // Sum of 1/i^theta for i in (from, to]
+  private static double zetaRange(long from, long to, double theta) {
+    long exactTo = Math.min(to, Math.max(from, EXACT_ZETA_LIMIT));
+    double sum = 0;
+    for (long i = from + 1; i <= exactTo; i++) {
+      sum += 1 / Math.pow(i, theta);
+    }
+    if (exactTo < to) {
+      sum += eulerMaclaurinTail(exactTo, to, theta);
+    }
+    return sum;
+  }
+
+  private static double eulerMaclaurinTail(long m, long n, double theta) {
+    double integral =
+        theta == 1.0
+            ? Math.log((double) n / m)
+            : (Math.pow(n, 1 - theta) - Math.pow(m, 1 - theta)) / (1 - theta);
+    double endpoints = (Math.pow(n, -theta) - Math.pow(m, -theta)) / 2;
+    double derivative = -theta * (Math.pow(n, -theta - 1) - Math.pow(m, -theta - 1)) / 12;
+    return integral + endpoints + derivative;
+  }
+}
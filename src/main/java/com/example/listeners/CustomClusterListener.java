@@ -1,6 +1,9 @@
 package com.example.listeners;
 
 import com.example.ClusterState;
+import com.example.FailoverAnalyzer;
+import com.example.FlightRecorder;
+import com.example.FlightRecorder.Kind;
 import com.mongodb.connection.ClusterDescription;
 import com.mongodb.connection.ServerDescription;
 import com.mongodb.event.*;
@@ -11,6 +14,8 @@ import org.slf4j.LoggerFactory;
 public class CustomClusterListener implements ClusterListener {
   private static final Logger logger = LoggerFactory.getLogger(CustomClusterListener.class);
   private final ClusterState clusterState = ClusterState.getInstance();
+  private final FailoverAnalyzer failoverAnalyzer = FailoverAnalyzer.getInstance();
+  private final FlightRecorder flightRecorder = FlightRecorder.getInstance();
 
   @Override
   public void clusterOpening(ClusterOpeningEvent event) {
@@ -26,6 +31,14 @@ public class CustomClusterListener implements ClusterListener {
   public void clusterDescriptionChanged(ClusterDescriptionChangedEvent event) {
     ClusterDescription newDescription = event.getNewDescription();
     clusterState.updateState(newDescription);
+    failoverAnalyzer.clusterChanged(event.getPreviousDescription(), newDescription);
+    flightRecorder.record(
+        Kind.CLUSTER_CHANGED,
+        newDescription.getServerDescriptions().size(),
+        null,
+        null,
+        0,
+        newDescription.hasWritableServer() ? 1 : 0);
 
     logger.debug("Cluster description changed - Cluster ID: {}", event.getClusterId());
     logger.debug("New cluster state: {}", clusterState);
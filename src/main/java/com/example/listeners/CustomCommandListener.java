@@ -1,5 +1,9 @@
 package com.example.listeners;
 
+import com.example.CommandLatencies;
+import com.example.FailoverAnalyzer;
+import com.example.FlightRecorder;
+import com.example.FlightRecorder.Kind;
 import com.mongodb.event.CommandFailedEvent;
 import com.mongodb.event.CommandListener;
 import com.mongodb.event.CommandStartedEvent;
@@ -8,16 +12,46 @@ import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Logs commands and feeds their driver-measured latency to {@link CommandLatencies}, and their
+ * outcomes to {@link FailoverAnalyzer}.
+ */
 public class CustomCommandListener implements CommandListener {
   private static final Logger logger = LoggerFactory.getLogger(CustomCommandListener.class);
 
+  private final CommandLatencies latencies = CommandLatencies.getInstance();
+  private final FailoverAnalyzer failoverAnalyzer = FailoverAnalyzer.getInstance();
+  private final FlightRecorder flightRecorder = FlightRecorder.getInstance();
+
   @Override
   public void commandStarted(CommandStartedEvent event) {
     logger.debug("Command started: {}", event.getCommandName());
+    latencies.commandStarted(event.getRequestId());
+    flightRecorder.record(
+        Kind.COMMAND_STARTED,
+        event.getRequestId(),
+        event.getCommandName(),
+        event.getConnectionDescription().getServerAddress(),
+        0,
+        event.getConnectionDescription().getConnectionId().getLocalValue());
   }
 
   @Override
   public void commandSucceeded(CommandSucceededEvent event) {
+    latencies.commandSucceeded(
+        event.getRequestId(),
+        event.getCommandName(),
+        event.getConnectionDescription().getServerAddress(),
+        event.getElapsedTime(TimeUnit.NANOSECONDS));
+    failoverAnalyzer.commandSucceeded(
+        event.getCommandName(), event.getConnectionDescription().getServerAddress());
+    flightRecorder.record(
+        Kind.COMMAND_SUCCEEDED,
+        event.getRequestId(),
+        event.getCommandName(),
+        event.getConnectionDescription().getServerAddress(),
+        event.getElapsedTime(TimeUnit.NANOSECONDS),
+        0);
     logger.debug(
         "Command succeeded: {}, took {} ms",
         event.getCommandName(),
@@ -26,6 +60,16 @@ public class CustomCommandListener implements CommandListener {
 
   @Override
   public void commandFailed(CommandFailedEvent event) {
+    latencies.commandFailed(
+        event.getRequestId(), event.getCommandName(), event.getElapsedTime(TimeUnit.NANOSECONDS));
+    failoverAnalyzer.commandFailed();
+    flightRecorder.record(
+        Kind.COMMAND_FAILED,
+        event.getRequestId(),
+        event.getCommandName(),
+        event.getConnectionDescription().getServerAddress(),
+        event.getElapsedTime(TimeUnit.NANOSECONDS),
+        FlightRecorder.errorCode(event.getThrowable()));
     logger.warn(
         "Command failed: {}, error: {}", event.getCommandName(), event.getThrowable().getMessage());
   }
@@ -1,12 +1,29 @@
 package com.example.listeners;
 
+import com.example.ConnectionPoolMetrics;
+import com.example.FlightRecorder;
+import com.example.FlightRecorder.Kind;
+import com.mongodb.connection.ConnectionId;
 import com.mongodb.event.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/** Logs pool events and feeds them to {@link ConnectionPoolMetrics}. */
 public class CustomConnectionPoolListener implements ConnectionPoolListener {
   private static final Logger logger = LoggerFactory.getLogger(CustomConnectionPoolListener.class);
 
+  private final ConnectionPoolMetrics metrics = ConnectionPoolMetrics.getInstance();
+  private final FlightRecorder flightRecorder = FlightRecorder.getInstance();
+
+  @Override
+  public void connectionPoolCreated(ConnectionPoolCreatedEvent event) {
+    logger.debug(
+        "Connection pool created: {}, max size {}",
+        event.getServerId(),
+        event.getSettings().getMaxSize());
+    metrics.poolCreated(event.getServerId().getAddress(), event.getSettings().getMaxSize());
+  }
+
   @Override
   public void connectionPoolOpened(ConnectionPoolOpenedEvent event) {
     logger.debug("Connection pool opened: {}", event.getServerId());
@@ -17,19 +34,46 @@ public class CustomConnectionPoolListener implements ConnectionPoolListener {
     logger.debug("Connection pool closed: {}", event.getServerId());
   }
 
+  @Override
+  public void connectionCheckOutStarted(ConnectionCheckOutStartedEvent event) {
+    metrics.checkOutStarted(event.getServerId().getAddress());
+    flightRecorder.record(Kind.CHECKOUT_STARTED, 0, null, event.getServerId().getAddress(), 0, 0);
+  }
+
   @Override
   public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
     logger.debug("Connection checked out: {}", event.getConnectionId());
+    metrics.checkedOut(event.getConnectionId().getServerId().getAddress());
+    record(Kind.CHECKED_OUT, event.getConnectionId());
+  }
+
+  @Override
+  public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+    logger.debug("Connection check out failed: {}, {}", event.getServerId(), event.getReason());
+    metrics.checkOutFailed(
+        event.getServerId().getAddress(),
+        event.getReason() == ConnectionCheckOutFailedEvent.Reason.TIMEOUT);
+    flightRecorder.record(
+        Kind.CHECKOUT_FAILED,
+        0,
+        null,
+        event.getServerId().getAddress(),
+        0,
+        event.getReason().ordinal());
   }
 
   @Override
   public void connectionCheckedIn(ConnectionCheckedInEvent event) {
     logger.debug("Connection checked in: {}", event.getConnectionId());
+    metrics.checkedIn(event.getConnectionId().getServerId().getAddress());
+    record(Kind.CHECKED_IN, event.getConnectionId());
   }
 
   @Override
   public void connectionCreated(ConnectionCreatedEvent event) {
     logger.debug("Connection created: {}", event.getConnectionId());
+    metrics.connectionCreated(event.getConnectionId().getServerId().getAddress());
+    record(Kind.CONNECTION_CREATED, event.getConnectionId());
   }
 
   @Override
@@ -40,5 +84,12 @@ public class CustomConnectionPoolListener implements ConnectionPoolListener {
   @Override
   public void connectionClosed(ConnectionClosedEvent event) {
     logger.debug("Connection closed: {}", event.getConnectionId());
+    metrics.connectionClosed(event.getConnectionId().getServerId().getAddress());
+    record(Kind.CONNECTION_CLOSED, event.getConnectionId());
+  }
+
+  private void record(Kind kind, ConnectionId connectionId) {
+    flightRecorder.record(
+        kind, connectionId.getLocalValue(), null, connectionId.getServerId().getAddress(), 0, 0);
   }
 }
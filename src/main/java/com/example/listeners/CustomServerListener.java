@@ -1,11 +1,16 @@
 package com.example.listeners;
 
+import com.example.FlightRecorder;
+import com.example.FlightRecorder.Kind;
+import com.example.ServerHealth;
 import com.mongodb.event.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class CustomServerListener implements ServerListener {
   private static final Logger logger = LoggerFactory.getLogger(CustomServerListener.class);
+  private final ServerHealth serverHealth = ServerHealth.getInstance();
+  private final FlightRecorder flightRecorder = FlightRecorder.getInstance();
 
   @Override
   public void serverOpening(ServerOpeningEvent event) {
@@ -19,6 +24,14 @@ public class CustomServerListener implements ServerListener {
 
   @Override
   public void serverDescriptionChanged(ServerDescriptionChangedEvent event) {
+    serverHealth.serverDescriptionChanged(event.getNewDescription());
+    flightRecorder.record(
+        Kind.SERVER_CHANGED,
+        0,
+        null,
+        event.getNewDescription().getAddress(),
+        event.getNewDescription().getRoundTripTimeNanos(),
+        event.getNewDescription().getType().ordinal());
     logger.debug(
         "Server description changed - Server: {}, New description: {}",
         event.getServerId(),
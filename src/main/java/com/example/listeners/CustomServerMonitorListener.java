@@ -1,5 +1,8 @@
 package com.example.listeners;
 
+import com.example.FlightRecorder;
+import com.example.FlightRecorder.Kind;
+import com.example.ServerHealth;
 import com.mongodb.event.ServerHeartbeatFailedEvent;
 import com.mongodb.event.ServerHeartbeatStartedEvent;
 import com.mongodb.event.ServerHeartbeatSucceededEvent;
@@ -8,16 +11,40 @@ import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Logs heartbeats, feeds their round-trip times and failures to {@link ServerHealth} and records
+ * them in the {@link FlightRecorder}.
+ */
 public class CustomServerMonitorListener implements ServerMonitorListener {
   private static final Logger logger = LoggerFactory.getLogger(CustomServerMonitorListener.class);
+  private final ServerHealth serverHealth = ServerHealth.getInstance();
+  private final FlightRecorder flightRecorder = FlightRecorder.getInstance();
 
   @Override
   public void serverHearbeatStarted(ServerHeartbeatStartedEvent event) {
+    flightRecorder.record(
+        Kind.HEARTBEAT_STARTED,
+        event.getConnectionId().getLocalValue(),
+        null,
+        event.getConnectionId().getServerId().getAddress(),
+        0,
+        0);
     logger.debug("Starting heartbeat on {}", event.getConnectionId().getServerId().getAddress());
   }
 
   @Override
   public void serverHeartbeatSucceeded(ServerHeartbeatSucceededEvent event) {
+    serverHealth.heartbeatSucceeded(
+        event.getConnectionId().getServerId().getAddress(),
+        event.getElapsedTime(TimeUnit.NANOSECONDS),
+        event.isAwaited());
+    flightRecorder.record(
+        Kind.HEARTBEAT_SUCCEEDED,
+        event.getConnectionId().getLocalValue(),
+        null,
+        event.getConnectionId().getServerId().getAddress(),
+        event.getElapsedTime(TimeUnit.NANOSECONDS),
+        event.isAwaited() ? 1 : 0);
     logger.debug(
         "Server heartbeat succeeded: {}, took {} ms",
         event.getConnectionId().getServerId().getAddress(),
@@ -26,6 +53,15 @@ public class CustomServerMonitorListener implements ServerMonitorListener {
 
   @Override
   public void serverHeartbeatFailed(ServerHeartbeatFailedEvent event) {
+    serverHealth.heartbeatFailed(
+        event.getConnectionId().getServerId().getAddress(), event.isAwaited());
+    flightRecorder.record(
+        Kind.HEARTBEAT_FAILED,
+        event.getConnectionId().getLocalValue(),
+        null,
+        event.getConnectionId().getServerId().getAddress(),
+        event.getElapsedTime(TimeUnit.NANOSECONDS),
+        FlightRecorder.errorCode(event.getThrowable()));
     logger.warn(
         "Server heartbeat failed: {}, error: {}",
         event.getConnectionId().getServerId().getAddress(),
@@ -0,0 +1,379 @@
+package com.example.server;
+
+import com.example.MetricsReporter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.bson.BsonArray;
+import org.bson.BsonBoolean;
+import org.bson.BsonDateTime;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A loopback stand-in for mongod that speaks just enough of the wire protocol (OP_MSG, plus the
+ * legacy OP_QUERY handshake) for the driver to connect, insert, update, find and getMore. Every
+ * command succeeds without storing anything, after an optional injected delay, so a run against it
+ * measures the client, driver and connection pool on their own.
+ */
+public class NullMongoServer implements Closeable, MetricsReporter {
+  private static final Logger logger = LoggerFactory.getLogger(NullMongoServer.class);
+
+  private static final int OP_REPLY = 1;
+  private static final int OP_QUERY = 2004;
+  private static final int OP_MSG = 2013;
+  private static final int CHECKSUM_PRESENT = 1;
+  private static final int MORE_TO_COME = 1 << 1;
+  private static final int HEADER_LENGTH = 16;
+  // 4.2: new enough for every command the app sends, old enough that the driver polls with plain
+  // hello commands instead of streaming (exhaust) heartbeats
+  private static final int MAX_WIRE_VERSION = 8;
+  private static final Set<String> HANDSHAKE_COMMANDS =
+      Set.of("hello", "isMaster", "ismaster", "ping", "buildInfo", "buildinfo", "endSessions");
+  // Write command -> the field holding its statements
+  private static final Map<String, String> WRITE_COMMANDS =
+      Map.of("insert", "documents", "update", "updates", "delete", "deletes");
+
+  private final long latencyNanos;
+  private final long jitterNanos;
+  private final double errorRate;
+  private final RawBsonDocument findResult;
+  private final AtomicInteger nextConnectionId = new AtomicInteger(1);
+  private final AtomicInteger nextRequestId = new AtomicInteger(1);
+  private final Map<String, LongAdder> commandCounts = new ConcurrentHashMap<>();
+  private final LongAdder injectedErrors = new LongAdder();
+  private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+  private ServerSocket serverSocket;
+
+  /**
+   * @param latencyMicros delay before every reply, except to handshakes and heartbeats
+   * @param jitterMicros extra delay, uniform in [0, jitterMicros]
+   * @param errorRate fraction of commands, again except handshakes, that fail with ok: 0. In
+   *     insert, update and delete commands each statement fails on its own, as a write error
+   * @param findResult returned as the single document of every find
+   */
+  public NullMongoServer(
+      long latencyMicros, long jitterMicros, double errorRate, RawBsonDocument findResult) {
+    this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+    this.jitterNanos = TimeUnit.MICROSECONDS.toNanos(jitterMicros);
+    this.errorRate = errorRate;
+    this.findResult = findResult;
+  }
+
+  /** Binds an ephemeral loopback port and starts accepting connections. */
+  public void start() throws IOException {
+    serverSocket = new ServerSocket(0, 256, InetAddress.getLoopbackAddress());
+    Thread acceptor = new Thread(this::acceptLoop, "null-server-acceptor");
+    acceptor.setDaemon(true);
+    acceptor.start();
+    logger.info(
+        "Null server listening on port {} (latency {} us, jitter {} us, error rate {})",
+        serverSocket.getLocalPort(),
+        TimeUnit.NANOSECONDS.toMicros(latencyNanos),
+        TimeUnit.NANOSECONDS.toMicros(jitterNanos),
+        errorRate);
+  }
+
+  public String getConnectionString() {
+    return "mongodb://127.0.0.1:" + serverSocket.getLocalPort() + "/?directConnection=true";
+  }
+
+  @Override
+  public void close() throws IOException {
+    serverSocket.close();
+    for (Socket connection : connections) {
+      connection.close();
+    }
+  }
+
+  private void acceptLoop() {
+    while (!serverSocket.isClosed()) {
+      try {
+        Socket socket = serverSocket.accept();
+        socket.setTcpNoDelay(true);
+        int connectionId = nextConnectionId.getAndIncrement();
+        Thread handler =
+            new Thread(() -> serve(socket, connectionId), "null-server-" + connectionId);
+        handler.setDaemon(true);
+        handler.start();
+      } catch (IOException e) {
+        if (!serverSocket.isClosed()) {
+          logger.error("Null server accept failed: {}", e.getMessage());
+        }
+      }
+    }
+  }
+
+  private void serve(Socket socket, int connectionId) {
+    connections.add(socket);
+    try (socket) {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+      while (true) {
+        int messageLength = Integer.reverseBytes(in.readInt());
+        byte[] message = new byte[messageLength];
+        in.readFully(message, 4, messageLength - 4);
+        ByteBuffer buffer = ByteBuffer.wrap(message).order(ByteOrder.LITTLE_ENDIAN);
+        int requestId = buffer.getInt(4);
+        int opCode = buffer.getInt(12);
+        buffer.position(HEADER_LENGTH);
+        if (opCode == OP_MSG) {
+          int flags = buffer.getInt();
+          int end = messageLength - ((flags & CHECKSUM_PRESENT) != 0 ? 4 : 0);
+          BsonDocument reply = handle(readSections(buffer, end), connectionId);
+          if ((flags & MORE_TO_COME) == 0) {
+            writeMessage(out, requestId, OP_MSG, reply);
+          }
+        } else if (opCode == OP_QUERY) {
+          buffer.getInt(); // flags
+          skipCString(buffer); // full collection name
+          buffer.position(buffer.position() + 8); // numberToSkip, numberToReturn
+          writeMessage(out, requestId, OP_REPLY, handle(readDocument(buffer), connectionId));
+        } else {
+          logger.error("Null server: unsupported opCode {}, closing connection", opCode);
+          return;
+        }
+      }
+    } catch (EOFException | SocketException e) {
+      // Client closed the connection
+    } catch (IOException e) {
+      logger.error("Null server connection {} failed: {}", connectionId, e.getMessage());
+    } finally {
+      connections.remove(socket);
+    }
+  }
+
+  /**
+   * Returns the command body (section kind 0) with each document sequence (kind 1) folded in as an
+   * array, which is how the same command looks when sent without sequences.
+   */
+  private static BsonDocument readSections(ByteBuffer buffer, int end) {
+    BsonDocument command = null;
+    Map<String, BsonArray> sequences = new LinkedHashMap<>();
+    while (buffer.position() < end) {
+      byte kind = buffer.get();
+      if (kind == 0) {
+        command = readDocument(buffer);
+      } else {
+        int sectionEnd = buffer.position() + buffer.getInt();
+        String identifier = readCString(buffer);
+        BsonArray documents = new BsonArray();
+        while (buffer.position() < sectionEnd) {
+          documents.add(readDocument(buffer));
+        }
+        sequences.put(identifier, documents);
+      }
+    }
+    BsonDocument body = new BsonDocument();
+    if (command != null) {
+      body.putAll(command);
+    }
+    sequences.forEach(body::append);
+    return body;
+  }
+
+  private BsonDocument handle(BsonDocument command, int connectionId) {
+    String name = command.getFirstKey();
+    commandCounts.computeIfAbsent(name, k -> new LongAdder()).increment();
+    if (HANDSHAKE_COMMANDS.contains(name)) {
+      return handshakeReply(name, connectionId);
+    }
+
+    long delay =
+        latencyNanos
+            + (jitterNanos > 0 ? ThreadLocalRandom.current().nextLong(jitterNanos + 1) : 0);
+    if (delay > 0) {
+      LockSupport.parkNanos(delay);
+    }
+    if (WRITE_COMMANDS.containsKey(name)) {
+      return writeReply(name, size(command, WRITE_COMMANDS.get(name)));
+    }
+    if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+      injectedErrors.increment();
+      return new BsonDocument("ok", new BsonInt32(0))
+          .append("errmsg", new BsonString("Injected failure of " + name))
+          .append("code", new BsonInt32(1))
+          .append("codeName", new BsonString("InternalError"));
+    }
+
+    String database = command.getString("$db", new BsonString("admin")).getValue();
+    BsonValue target = command.get(name);
+    String namespace =
+        database
+            + "."
+            + (target != null && target.isString() ? target.asString().getValue() : "$cmd");
+    switch (name) {
+      case "find":
+        return cursorReply("firstBatch", namespace, new BsonArray(List.of(findResult)));
+      case "getMore":
+        return cursorReply(
+            "nextBatch",
+            database + "." + command.getString("collection").getValue(),
+            new BsonArray());
+      case "aggregate":
+        return cursorReply("firstBatch", namespace, new BsonArray());
+      case "listCollections":
+      case "listIndexes":
+        return cursorReply("firstBatch", database + ".$cmd." + name, new BsonArray());
+      case "listDatabases":
+        return ok().append("databases", new BsonArray()).append("totalSize", new BsonInt64(0));
+      default:
+        // create, createIndexes, drop, killCursors, enableSharding, shardCollection, ...
+        return ok();
+    }
+  }
+
+  // Statements that fail are reported in writeErrors and left out of n, as a server does
+  private BsonDocument writeReply(String name, int statements) {
+    BsonArray writeErrors = new BsonArray();
+    if (errorRate > 0) {
+      for (int i = 0; i < statements; i++) {
+        if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+          injectedErrors.increment();
+          writeErrors.add(
+              new BsonDocument("index", new BsonInt32(i))
+                  .append("code", new BsonInt32(1))
+                  .append("errmsg", new BsonString("Injected failure of " + name)));
+        }
+      }
+    }
+    BsonInt32 applied = new BsonInt32(statements - writeErrors.size());
+    BsonDocument reply = ok().append("n", applied);
+    if (name.equals("update")) {
+      reply.append("nModified", applied);
+    }
+    if (!writeErrors.isEmpty()) {
+      reply.append("writeErrors", writeErrors);
+    }
+    return reply;
+  }
+
+  private BsonDocument handshakeReply(String name, int connectionId) {
+    switch (name) {
+      case "hello":
+      case "isMaster":
+      case "ismaster":
+        return new BsonDocument("helloOk", BsonBoolean.TRUE)
+            .append("isWritablePrimary", BsonBoolean.TRUE)
+            .append("ismaster", BsonBoolean.TRUE)
+            .append("maxBsonObjectSize", new BsonInt32(16 * 1024 * 1024))
+            .append("maxMessageSizeBytes", new BsonInt32(48_000_000))
+            .append("maxWriteBatchSize", new BsonInt32(100_000))
+            .append("localTime", new BsonDateTime(System.currentTimeMillis()))
+            .append("logicalSessionTimeoutMinutes", new BsonInt32(30))
+            .append("connectionId", new BsonInt32(connectionId))
+            .append("minWireVersion", new BsonInt32(0))
+            .append("maxWireVersion", new BsonInt32(MAX_WIRE_VERSION))
+            .append("readOnly", BsonBoolean.FALSE)
+            .append("ok", new BsonInt32(1));
+      case "buildInfo":
+      case "buildinfo":
+        return ok().append("version", new BsonString("4.2.0"))
+            .append(
+                "versionArray",
+                new BsonArray(
+                    List.of(
+                        new BsonInt32(4), new BsonInt32(2), new BsonInt32(0), new BsonInt32(0))));
+      default:
+        return ok();
+    }
+  }
+
+  private static BsonDocument ok() {
+    return new BsonDocument("ok", new BsonInt32(1));
+  }
+
+  private static BsonDocument cursorReply(String batchField, String namespace, BsonArray batch) {
+    return new BsonDocument(
+            "cursor",
+            new BsonDocument(batchField, batch)
+                .append("id", new BsonInt64(0))
+                .append("ns", new BsonString(namespace)))
+        .append("ok", new BsonInt32(1));
+  }
+
+  private static int size(BsonDocument command, String field) {
+    BsonValue value = command.get(field);
+    return value != null && value.isArray() ? value.asArray().size() : 0;
+  }
+
+  private void writeMessage(OutputStream out, int responseTo, int opCode, BsonDocument reply)
+      throws IOException {
+    ByteBuffer document =
+        new RawBsonDocument(reply, new BsonDocumentCodec()).getByteBuffer().asNIO();
+    int bodyPrefix = opCode == OP_MSG ? 4 + 1 : 4 + 8 + 4 + 4;
+    int length = HEADER_LENGTH + bodyPrefix + document.remaining();
+    ByteBuffer message = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+    message
+        .putInt(length)
+        .putInt(nextRequestId.getAndIncrement())
+        .putInt(responseTo)
+        .putInt(opCode);
+    if (opCode == OP_MSG) {
+      message.putInt(0).put((byte) 0);
+    } else {
+      message.putInt(0).putLong(0).putInt(0).putInt(1);
+    }
+    message.put(document);
+    out.write(message.array());
+    out.flush();
+  }
+
+  private static RawBsonDocument readDocument(ByteBuffer buffer) {
+    int start = buffer.position();
+    int length = buffer.getInt(start);
+    buffer.position(start + length);
+    return new RawBsonDocument(buffer.array(), start, length);
+  }
+
+  private static String readCString(ByteBuffer buffer) {
+    int start = buffer.position();
+    skipCString(buffer);
+    return new String(buffer.array(), start, buffer.position() - start - 1, StandardCharsets.UTF_8);
+  }
+
+  private static void skipCString(ByteBuffer buffer) {
+    while (buffer.get() != 0) {
+      // advance past the terminator
+    }
+  }
+
+  @Override
+  public void printFinalReport() {
+    commandCounts.entrySet().stream()
+        .sorted(Map.Entry.comparingByKey())
+        .forEach(
+            e ->
+                System.out.println(
+                    "[NULL-SERVER], Commands(" + e.getKey() + "), " + e.getValue().sum()));
+    System.out.println("[NULL-SERVER], InjectedErrors, " + injectedErrors.sum());
+  }
+}